@@ -17,12 +17,19 @@
 package rubensandreoli.drivescanner;
 
 import javax.swing.SwingUtilities;
+import rubensandreoli.drivescanner.cli.CommandLine;
 import rubensandreoli.drivescanner.gui.MainFrame;
 
 public class Launcher {
     
+     /**
+      * Opens the window; given arguments, runs headless instead; see {@link CommandLine}.
+      */
      public static void main(String[] args) {
-
+        if(args.length > 0){
+            System.exit(CommandLine.run(args));
+        }
+        
         try{
             SwingUtilities.invokeLater(() -> new MainFrame().setVisible(true));
         }catch(RuntimeException ex){
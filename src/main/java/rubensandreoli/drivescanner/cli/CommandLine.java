@@ -0,0 +1,721 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import rubensandreoli.drivescanner.io.Checkpoint;
+import rubensandreoli.drivescanner.io.DuplicateFinder;
+import rubensandreoli.drivescanner.io.Estimate;
+import rubensandreoli.drivescanner.io.Exclusions;
+import rubensandreoli.drivescanner.io.FileChanges;
+import rubensandreoli.drivescanner.io.FileTable;
+import rubensandreoli.drivescanner.io.Folder;
+import rubensandreoli.drivescanner.io.PathIndex;
+import rubensandreoli.drivescanner.io.Repository;
+import rubensandreoli.drivescanner.io.Scan;
+import rubensandreoli.drivescanner.io.ScanScheduler;
+import rubensandreoli.drivescanner.io.Scanner;
+import rubensandreoli.drivescanner.io.Throttle;
+import rubensandreoli.drivescanner.io.Watcher;
+
+/**
+ * Headless mode, for scheduled jobs and servers; no AWT class is loaded.
+ * <br>Results are written to the standard output as tab separated rows, the first
+ * one naming the columns; tabs, line breaks and backslashes in values are escaped
+ * with a backslash. Dates are ISO-8601 instants and sizes are in bytes. Messages
+ * go to the standard error.
+ */
+public class CommandLine {
+
+    //<editor-fold defaultstate="collapsed" desc="EXIT CODES">
+    public static final int OK = 0;
+    public static final int FAILED = 1; //could not be done, or only partially.
+    public static final int USAGE = 2;
+    public static final int NOT_FOUND = 3; //scan does not exist.
+    //terminated by a signal, the exit code is the one the JVM sets: 128 plus the signal's number.
+    //</editor-fold>
+
+    private static final int DEFAULT_FULL_DEPTH = 2; //levels below the drive completely crawled by estimates.
+    private static final int DEFAULT_HASH_THREADS = 2; //size groups hashed at the same time; reads, not hashing, take the time.
+
+    private static final String USAGE_TEXT = String.join(System.lineSeparator(),
+            "usage: drivescanner <command> [options]",
+            "  scan <drive> <name> [--engine E] [--order O] [--reader R] [--exclude RULE]...",
+            "                      [--same-fs] [--no-follow] [--allocated] [--restart] [THROTTLE]",
+            "                      [--estimate FRACTION [--full-depth LEVELS]]",
+            "  scan-all <name> <drive>... [--per-device N] [--engine E] [--reader R] [--exclude RULE]...",
+            "                      [--same-fs] [--no-follow] [--allocated] [THROTTLE]",
+            "  refine <drive> <name> [--engine E] [THROTTLE]",
+            "  update <drive> <name> [--engine E] [--quick] [--allocated] [--spill-files] [--watch SECONDS] [THROTTLE]",
+            "  list [<drive>]",
+            "  diff <drive> <name> [--files]",
+            "  export <drive> <name> [--files]",
+            "  duplicates <drive> <name> [--min-size BYTES] [--threads N]",
+            "throttle: [--throttle FOLDERS_PER_SECOND] [--throttle-entries ENTRIES_PER_SECOND] [--adaptive]",
+            "exit codes: 0 ok, 1 failed, 2 usage, 3 scan not found");
+
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+    private final PrintWriter err = new PrintWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8), true);
+    private volatile boolean interrupted; //by a termination signal.
+    private volatile boolean finished;
+    private volatile Scanner.Progress progress; //last reported; null if none yet.
+
+    private CommandLine() {}
+
+    /**
+     * A termination signal interrupts scans and updates; their checkpoint is
+     * kept and nothing is saved.
+     *
+     * @return exit code.
+     */
+    public static int run(String[] args){
+        CommandLine commandLine = new CommandLine();
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            commandLine.interrupted = true;
+            long deadline = System.currentTimeMillis() + 10000; //time given to stop crawling and flush the checkpoint.
+            try {
+                while(!commandLine.finished && System.currentTimeMillis() < deadline){
+                    main.join(100);
+                }
+            } catch (InterruptedException ex) {}
+        }));
+        try{
+            return commandLine.execute(args);
+        }catch(UsageException ex){
+            commandLine.err.println(ex.getMessage());
+            commandLine.err.println(USAGE_TEXT);
+            return USAGE;
+        }finally{
+            commandLine.out.flush();
+            commandLine.finished = true;
+        }
+    }
+
+    private int execute(String[] args){
+        Arguments arguments = new Arguments(args);
+        String command = arguments.next("command");
+        switch(command){
+            case "scan": return scan(arguments);
+            case "scan-all": return scanAll(arguments);
+            case "update": return update(arguments);
+            case "refine": return refine(arguments);
+            case "list": return list(arguments);
+            case "diff": return diff(arguments);
+            case "export": return export(arguments);
+            case "duplicates": return duplicates(arguments);
+            case "help": case "-h": case "--help":
+                out.println(USAGE_TEXT);
+                return OK;
+            default: throw new UsageException("unknown command: "+command);
+        }
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="COMMANDS">
+    private int scan(Arguments arguments){
+        File drive = toDrive(arguments.next("drive"));
+        String name = arguments.next("name");
+        Scanner scanner = createScanner();
+        List<String> rules = new ArrayList<>();
+        Throttle throttle = new Throttle(0, 0, false);
+        boolean restart = false;
+        double fraction = 0; //not estimated.
+        int fullDepth = DEFAULT_FULL_DEPTH;
+        for(String option; (option = arguments.nextOption()) != null;){
+            switch(option){
+                case "--engine": scanner.setEngine(arguments.nextEnum("engine", Scanner.Engine.class)); break;
+                case "--order": scanner.setOrder(arguments.nextEnum("order", Scanner.Order.class)); break;
+                case "--reader": scanner.setReader(arguments.nextEnum("reader", Scanner.Reader.class)); break;
+                case "--exclude": rules.add(arguments.next("rule")); break;
+                case "--same-fs": scanner.setSameFileSystem(true); break;
+                case "--no-follow": scanner.setFollowLinks(false); break;
+                case "--allocated": scanner.setCountAllocated(true); break;
+                case "--restart": restart = true; break;
+                case "--estimate": fraction = arguments.nextRate("fraction"); break;
+                case "--full-depth": fullDepth = (int) arguments.nextRate("levels"); break;
+                default:
+                    if(!parseThrottle(option, arguments, throttle)) throw new UsageException("unknown option: "+option);
+                    scanner.setThrottle(throttle); //only if asked for; reads are not paced otherwise.
+            }
+        }
+        if(!drive.isDirectory()){
+            err.println("Drive not found: "+drive);
+            return FAILED;
+        }
+        try{
+            if(!rules.isEmpty()) scanner.setExclusions(new Exclusions(rules));
+        }catch(IllegalArgumentException ex){
+            throw new UsageException(ex.getMessage());
+        }
+        if(fraction > 1) throw new UsageException("invalid fraction: "+fraction);
+
+        Repository.Data data = load();
+        if(Repository.getInstance().existsScan(drive, name)){
+            err.println("Scan already exists: "+name);
+            return FAILED;
+        }
+        scanner.setSpillFolder(Repository.getInstance().getFolder());
+        Scan scan;
+        if(fraction > 0){
+            scan = scanner.estimate(name, drive, data.getDriveIndex(drive), fullDepth, fraction); //checkpoints are not used.
+        }else{
+            Checkpoint checkpoint = Repository.getInstance().getCheckpoint(drive);
+            if(restart) checkpoint.delete(); //otherwise an unfinished scan of the drive is resumed.
+            scanner.setCheckpoint(checkpoint);
+            scan = scanner.scan(name, drive, data.getDriveIndex(drive));
+        }
+        if(interrupted){
+            err.println(fraction > 0? "Interrupted; nothing was saved." : "Interrupted; run the scan again to resume it.");
+            return FAILED;
+        }
+        printExclusionHits();
+        if(scan.isEmpty()){
+            err.println("No new folders were found, this scan will not be saved.");
+            return OK;
+        }
+        if(!save(scan, true)) return FAILED;
+        if(scan.getEstimate() != null){
+            printEstimates(scan);
+        }else{
+            printScanHeader();
+            printScan(scan);
+        }
+        return OK;
+    }
+
+    /**
+     * Scans several drives with the same name, each in its own scan; drives on
+     * different devices are scanned in parallel. Checkpoints are not used.
+     */
+    private int scanAll(Arguments arguments){
+        String name = arguments.next("name");
+        Set<File> drives = new LinkedHashSet<>();
+        for(String drive; (drive = arguments.nextValue()) != null;){
+            drives.add(toDrive(drive));
+        }
+        if(drives.isEmpty()) throw new UsageException("missing drive");
+        List<Consumer<Scanner>> settings = new ArrayList<>(); //applied to the scanner of each drive.
+        List<String> rules = new ArrayList<>();
+        Throttle throttle = new Throttle(0, 0, false); //copied, so each drive has its own.
+        boolean throttled = false;
+        int perDevice = 1;
+        for(String option; (option = arguments.nextOption()) != null;){
+            switch(option){
+                case "--per-device": perDevice = (int) arguments.nextRate("scans per device"); break;
+                case "--engine": Scanner.Engine engine = arguments.nextEnum("engine", Scanner.Engine.class); settings.add(s -> s.setEngine(engine)); break;
+                case "--reader": Scanner.Reader reader = arguments.nextEnum("reader", Scanner.Reader.class); settings.add(s -> s.setReader(reader)); break;
+                case "--exclude": rules.add(arguments.next("rule")); break;
+                case "--same-fs": settings.add(s -> s.setSameFileSystem(true)); break;
+                case "--no-follow": settings.add(s -> s.setFollowLinks(false)); break;
+                case "--allocated": settings.add(s -> s.setCountAllocated(true)); break;
+                default: 
+                    if(!parseThrottle(option, arguments, throttle)) throw new UsageException("unknown option: "+option);
+                    throttled = true;
+            }
+        }
+        if(perDevice < 1) throw new UsageException("invalid scans per device: "+perDevice);
+        try{
+            Exclusions exclusions = rules.isEmpty()? null : new Exclusions(rules); //immutable, so shared.
+            settings.add(s -> s.setExclusions(exclusions));
+        }catch(IllegalArgumentException ex){
+            throw new UsageException(ex.getMessage());
+        }
+        if(throttled) settings.add(s -> s.setThrottle(new Throttle(throttle.getListingsPerSecond(), throttle.getEntriesPerSecond(), throttle.isAdaptive())));
+
+        Repository.Data data = load();
+        Map<File, PathIndex> indexes = new HashMap<>();
+        for (File drive : drives) {
+            if(!drive.isDirectory()){
+                err.println("Drive not found: "+drive);
+                return FAILED;
+            }
+            if(Repository.getInstance().existsScan(drive, name)){
+                err.println("Scan already exists: "+name+" of "+drive);
+                return FAILED;
+            }
+            indexes.put(drive, data.getDriveIndex(drive));
+        }
+        File spillFolder = Repository.getInstance().getFolder();
+        Map<File, Scanner.Progress> progresses = new ConcurrentHashMap<>();
+        ScanScheduler scheduler = new ScanScheduler(perDevice, handler -> {
+            Scanner scanner = new Scanner(handler);
+            settings.forEach(setting -> setting.accept(scanner));
+            scanner.setSpillFolder(spillFolder);
+            return scanner;
+        });
+        Map<File, Scan> scans = scheduler.scan(name, drives, indexes::get, new ScanScheduler.Handler() {
+            @Override
+            public void setProgress(File root, Scanner.Progress progress) {
+                progresses.put(root, progress); //only the final reports are printed.
+            }
+
+            @Override
+            public boolean isInterrupted() {
+                return interrupted;
+            }
+        });
+        if(interrupted){
+            err.println("Interrupted; nothing was saved.");
+            return FAILED;
+        }
+        int code = OK;
+        printScanHeader();
+        for (Map.Entry<File, Scan> entry : scans.entrySet()) {
+            Scan scan = entry.getValue();
+            Scanner.Progress progress = progresses.get(entry.getKey());
+            if(progress != null){
+                for (Map.Entry<String, Long> hit : progress.getExclusionHits().entrySet()) {
+                    err.println("Excluded by "+hit.getKey()+" in "+entry.getKey()+": "+hit.getValue()+" folders");
+                }
+            }
+            if(scan.isEmpty()){
+                err.println("No new folders were found in "+entry.getKey()+", its scan will not be saved.");
+            }else if(save(scan, true)){
+                printScan(scan);
+            }else{
+                code = FAILED;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Crawls the folders an estimated scan left out, making it exact.
+     */
+    private int refine(Arguments arguments){
+        File drive = toDrive(arguments.next("drive"));
+        String name = arguments.next("name");
+        Scanner scanner = createScanner();
+        Throttle throttle = new Throttle(0, 0, false);
+        for(String option; (option = arguments.nextOption()) != null;){
+            if(option.equals("--engine")) scanner.setEngine(arguments.nextEnum("engine", Scanner.Engine.class));
+            else if(parseThrottle(option, arguments, throttle)) scanner.setThrottle(throttle);
+            else throw new UsageException("unknown option: "+option);
+        }
+        Repository.Data data = load();
+        Scan scan = findScan(data, drive, name);
+        if(scan == null) return NOT_FOUND;
+        if(scan.getEstimate() == null){
+            err.println("Scan is not an estimate: "+name);
+            return FAILED;
+        }
+        scanner.setSpillFolder(Repository.getInstance().getFolder());
+        Scan refined = scanner.refine(scan, data.getDriveIndex(drive));
+        if(refined == null){
+            err.println("Interrupted; the scan was not changed.");
+            return FAILED;
+        }
+        if(!save(refined, false)) return FAILED;
+        printScanHeader();
+        printScan(refined);
+        return OK;
+    }
+
+    private int update(Arguments arguments){
+        File drive = toDrive(arguments.next("drive"));
+        String name = arguments.next("name");
+        Scanner scanner = createScanner();
+        Throttle throttle = new Throttle(0, 0, false);
+        boolean verify = true;
+        double interval = 0; //not watching.
+        for(String option; (option = arguments.nextOption()) != null;){
+            switch(option){
+                case "--engine": scanner.setEngine(arguments.nextEnum("engine", Scanner.Engine.class)); break;
+                case "--quick": verify = false; break; //folders with the same modified time are skipped.
+                case "--watch": interval = arguments.nextRate("seconds"); break;
+                case "--allocated": scanner.setCountAllocated(true); break;
+                case "--spill-files": Repository.getInstance().setSpillFiles(true); break; //the scan is moved to its sidecar when saved.
+                default:
+                    if(!parseThrottle(option, arguments, throttle)) throw new UsageException("unknown option: "+option);
+                    scanner.setThrottle(throttle); //only if asked for; reads are not paced otherwise.
+            }
+        }
+        Scan scan = findScan(load(), drive, name);
+        if(scan == null) return NOT_FOUND;
+        if(interval > 0) return watch(scan, scanner, verify, interval);
+        scanner.update(scan, verify);
+        if(interrupted){
+            err.println("Interrupted; the scan was not changed.");
+            return FAILED;
+        }
+        if(!save(scan, false)) return FAILED;
+        printScanHeader();
+        printScan(scan);
+        return OK;
+    }
+
+    /**
+     * Updates the scan once, then again after each interval in which any of its
+     * folders changed, reading only those; runs until terminated.
+     */
+    private int watch(Scan scan, Scanner scanner, boolean verify, double interval){
+        try(Watcher watcher = new Watcher(scan)){ //before the first update, so that no change is missed.
+            err.println("Watching "+watcher.getTotalWatched()+" of "+scan.getTotalFolders()+" folders; terminate to stop.");
+            scanner.update(scan, verify);
+            if(interrupted) return OK;
+            if(!save(scan, false)) return FAILED;
+            printScanHeader();
+            printScan(scan);
+            out.flush();
+            long millis = (long) (interval * 1000);
+            while(!interrupted){
+                for (long end = System.currentTimeMillis() + millis; !interrupted && System.currentTimeMillis() < end;) {
+                    Thread.sleep(Math.min(100, millis));
+                }
+                if(interrupted || (watcher.getDirtyFolders().isEmpty() && !watcher.isOverflowed())) continue;
+                scanner.update(scan, watcher); //an interrupted update gives the changes back to the watcher.
+                if(interrupted) break;
+                if(!save(scan, false)) return FAILED;
+                printScan(scan);
+                out.flush();
+            }
+            return OK;
+        }catch(IOException ex){
+            err.println("Cannot watch "+scan.getName()+": "+ex.getMessage());
+            return FAILED;
+        }catch(InterruptedException ex){
+            return OK;
+        }
+    }
+
+    private int list(Arguments arguments){
+        File drive = arguments.hasNext()? toDrive(arguments.next("drive")) : null;
+        arguments.end();
+        Repository.Data data = load();
+        printScanHeader();
+        for (File scanned : data.getDrives()) {
+            if(drive != null && !drive.equals(scanned)) continue;
+            for (Scan scan : data.getDriveScans(scanned)) {
+                printScan(scan);
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Folders changed when the scan was last updated, even if their size did not;
+     * the scans of a drive do not share folders, so there are no two scans to compare.
+     * With files, each file added, removed or resized.
+     */
+    private int diff(Arguments arguments){
+        File drive = toDrive(arguments.next("drive"));
+        String name = arguments.next("name");
+        boolean files = false;
+        for(String option; (option = arguments.nextOption()) != null;){
+            if(!option.equals("--files")) throw new UsageException("unknown option: "+option);
+            files = true;
+        }
+        Scan scan = findScan(load(), drive, name);
+        if(scan == null) return NOT_FOUND;
+        if(files){
+            printRow("change", "folder", "file");
+            for (Folder folder : scan.getFolders()) {
+                if(!folder.hasChangedFiles()) continue;
+                FileChanges changes = folder.getChanges();
+                for (String file : changes.getAddedNames()) printRow("ADDED", folder.getFile(), file);
+                for (String file : changes.getRemovedNames()) printRow("REMOVED", folder.getFile(), file);
+                for (String file : changes.getResizedNames()) printRow("RESIZED", folder.getFile(), file);
+            }
+        }else{
+            printRow("state", "path", "size", "current_size", "added", "removed", "resized");
+            for (Folder folder : scan.getFolders()) {
+                if(folder.getState() != Folder.State.UNCHANGED || folder.hasChangedFiles()){
+                    printRow(folder.getState(), folder.getFile(), folder.getOriginalSize(), folder.getCurrentSize(),
+                            folder.getAddedFiles(), folder.getRemovedFiles(), folder.getResizedFiles());
+                }
+            }
+        }
+        return OK;
+    }
+
+    private int export(Arguments arguments){
+        File drive = toDrive(arguments.next("drive"));
+        String name = arguments.next("name");
+        boolean files = false;
+        for(String option; (option = arguments.nextOption()) != null;){
+            if(!option.equals("--files")) throw new UsageException("unknown option: "+option);
+            files = true;
+        }
+        Scan scan = findScan(load(), drive, name);
+        if(scan == null) return NOT_FOUND;
+        if(files){
+            printRow("folder", "file", "size");
+            for (Folder folder : scan.getFolders()) {
+                FileTable table = folder.getFiles();
+                for (int i = 0; i < table.size(); i++) {
+                    printRow(folder.getFile(), table.getName(i), table.getSize(i));
+                }
+            }
+        }else{
+            printRow("path", "state", "size", "current_size", "allocated_size", "files");
+            for (Folder folder : scan.getFolders()) {
+                printRow(folder.getFile(), folder.getState(), folder.getOriginalSize(), folder.getCurrentSize(),
+                        folder.getAllocatedSize(), folder.getTotalFiles());
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Files of the scan with the same content, as they are now; each group of
+     * duplicates is numbered, one row per file.
+     */
+    private int duplicates(Arguments arguments){
+        File drive = toDrive(arguments.next("drive"));
+        String name = arguments.next("name");
+        long minSize = 1L;
+        int threads = DEFAULT_HASH_THREADS;
+        for(String option; (option = arguments.nextOption()) != null;){
+            switch(option){
+                case "--min-size": minSize = (long) arguments.nextRate("bytes"); break;
+                case "--threads": threads = (int) arguments.nextRate("threads"); break;
+                default: throw new UsageException("unknown option: "+option);
+            }
+        }
+        if(threads < 1) throw new UsageException("invalid threads: "+threads);
+        Scan scan = findScan(load(), drive, name);
+        if(scan == null) return NOT_FOUND;
+        DuplicateFinder finder = new DuplicateFinder(threads);
+        finder.setMinSize(minSize);
+        printRow("group", "size", "path");
+        finder.find(scan.getFolders(), new DuplicateFinder.Handler() {
+            private int group;
+
+            @Override
+            public void onDuplicates(long size, List<File> files) {
+                group++;
+                for (File file : files) {
+                    printRow(group, size, file);
+                }
+            }
+
+            @Override
+            public boolean isInterrupted() {
+                return interrupted;
+            }
+        });
+        if(interrupted){
+            err.println("Interrupted; not every file was compared.");
+            return FAILED;
+        }
+        return OK;
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="SUPPORT">
+    private Scanner createScanner(){
+        return new Scanner(new Scanner.Handler(){
+            @Override
+            public void setProgress(Scanner.Progress progress) {
+                CommandLine.this.progress = progress; //only the final report is printed.
+            }
+
+            @Override
+            public boolean isInterrupted() {
+                return interrupted;
+            }
+        });
+    }
+
+    /**
+     * Reports, as messages, the folders each exclusion rule pruned in the last scan.
+     */
+    private void printExclusionHits(){
+        if(progress == null) return;
+        for (Map.Entry<String, Long> hit : progress.getExclusionHits().entrySet()) {
+            err.println("Excluded by "+hit.getKey()+": "+hit.getValue()+" folders");
+        }
+    }
+
+    /**
+     * @return {@code false} if the option is not one of the throttle's.
+     */
+    private static boolean parseThrottle(String option, Arguments arguments, Throttle throttle){
+        switch(option){
+            case "--throttle": throttle.setListingsPerSecond(arguments.nextRate("folders per second")); break;
+            case "--throttle-entries": throttle.setEntriesPerSecond(arguments.nextRate("entries per second")); break;
+            case "--adaptive": throttle.setAdaptive(true); break;
+            default: return false;
+        }
+        return true;
+    }
+
+    private static File toDrive(String path){
+        return new File(path).getAbsoluteFile();
+    }
+
+    /**
+     * Scans that cannot be read are reported and left out.
+     */
+    private Repository.Data load(){
+        Repository.getInstance().setMapFiles(true); //no scan is deleted or renamed, so sidecars can stay mapped until exit.
+        return Repository.getInstance().load(e -> err.println("Cannot load "+e.message+": "+e.cause));
+    }
+
+    private Scan findScan(Repository.Data data, File drive, String name){
+        for (Scan scan : data.getDriveScans(drive)) {
+            if(scan.getName().equals(name)) return scan;
+        }
+        err.println("Scan not found: "+name);
+        return null;
+    }
+
+    private boolean save(Scan scan, boolean isNew){
+        boolean[] failed = new boolean[1];
+        Repository.WorkListener listener = e -> {
+            err.println("Cannot save "+e.message+": "+e.cause);
+            failed[0] = true;
+        };
+        if(isNew){
+            Repository.getInstance().addScan(scan, listener);
+        }else{
+            Repository.getInstance().updateScan(scan, listener);
+        }
+        return !failed[0];
+    }
+
+    private void printScanHeader(){
+        printRow("drive", "name", "date", "folders", "files", "size", "updated_date", "updated_size", "allocated_size");
+    }
+
+    private void printEstimates(Scan scan){
+        printRow("path", "size", "size_margin", "files", "files_margin");
+        for (Map.Entry<File, Estimate> entry : new TreeMap<>(scan.getEstimates()).entrySet()) {
+            Estimate estimate = entry.getValue();
+            printRow(entry.getKey(), estimate.getSize(), estimate.getSizeMargin(), estimate.getFiles(), estimate.getFilesMargin());
+        }
+    }
+
+    private void printScan(Scan scan){
+        printRow(scan.getDrive(), scan.getName(), scan.getDate(), scan.getTotalFolders(), scan.getTotalFiles(), scan.getSize(),
+                scan.isUpdated()? scan.getUpdatedDate() : "", scan.isUpdated()? scan.getUpdatedSize() : "", scan.getAllocatedSize());
+    }
+
+    private void printRow(Object... values){
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if(i > 0) row.append('\t');
+            Object value = values[i];
+            if(value instanceof Date){
+                row.append(((Date) value).toInstant());
+            }else{
+                escape(String.valueOf(value), row);
+            }
+        }
+        out.println(row);
+    }
+
+    private static void escape(String value, StringBuilder row){
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c){
+                case '\\': row.append("\\\\"); break;
+                case '\t': row.append("\\t"); break;
+                case '\n': row.append("\\n"); break;
+                case '\r': row.append("\\r"); break;
+                default: row.append(c);
+            }
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="ARGUMENTS">
+    private static class UsageException extends RuntimeException{
+        private static final long serialVersionUID = 1L;
+
+        UsageException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Arguments{
+
+        private final String[] args;
+        private int next;
+
+        Arguments(String[] args) {
+            this.args = args;
+        }
+
+        boolean hasNext(){
+            return next < args.length;
+        }
+
+        String next(String description){
+            if(!hasNext()) throw new UsageException("missing "+description);
+            return args[next++];
+        }
+
+        /**
+         * @return {@code null} if there are no more arguments.
+         */
+        String nextOption(){
+            if(!hasNext()) return null;
+            String option = args[next++];
+            if(!option.startsWith("--")) throw new UsageException("unexpected argument: "+option);
+            return option;
+        }
+
+        <E extends Enum<E>> E nextEnum(String description, Class<E> type){
+            String value = next(description);
+            try{
+                return Enum.valueOf(type, value.toUpperCase().replace('-', '_'));
+            }catch(IllegalArgumentException ex){
+                throw new UsageException("unknown "+description+": "+value);
+            }
+        }
+
+        double nextRate(String description){
+            String value = next(description);
+            try{
+                double rate = Double.parseDouble(value);
+                if(rate >= 0) return rate;
+            }catch(NumberFormatException ex){}
+            throw new UsageException("invalid "+description+": "+value);
+        }
+
+        /**
+         * @return {@code null} if there are no more arguments, or the next one is an option.
+         */
+        String nextValue(){
+            if(!hasNext() || args[next].startsWith("--")) return null;
+            return args[next++];
+        }
+
+        void end(){
+            if(hasNext()) throw new UsageException("unexpected argument: "+args[next]);
+        }
+
+    }
+    //</editor-fold>
+
+}
@@ -27,6 +27,7 @@ import javax.swing.Icon;
 import javax.swing.SwingWorker;
 import rubensandreoli.drivescanner.gui.support.DialogFactory;
 import rubensandreoli.drivescanner.gui.support.IconLoader;
+import rubensandreoli.drivescanner.io.Checkpoint;
 import rubensandreoli.drivescanner.io.Folder;
 import rubensandreoli.drivescanner.io.Repository;
 import rubensandreoli.drivescanner.io.Scan;
@@ -46,6 +47,7 @@ import rubensandreoli.drivescanner.io.Scanner;
 public class MainFrame extends javax.swing.JFrame {
 
     private static final Icon FILTER_ICON = IconLoader.getIcon("filter.png");
+    private static final String SPILL_FILES_PROPERTY = "drivescanner.spillFiles"; //if true, files are read when a folder is expanded, and scans are moved to sidecars as they are saved.
     
     private Repository.Data data;
     private Scan currentScan;
@@ -127,6 +129,7 @@ public class MainFrame extends javax.swing.JFrame {
             
             @Override
             protected Repository.Data doInBackground() throws Exception {
+                Repository.getInstance().setSpillFiles(Boolean.getBoolean(SPILL_FILES_PROPERTY)); //opt-in; scans already saved keep their storage otherwise.
                 return Repository.getInstance().load(new Repository.LoadListener(){
                     @Override
                     public void onLoading(String filename) {
@@ -179,31 +182,35 @@ public class MainFrame extends javax.swing.JFrame {
         String scanName = showCreateNameDialog(actionName, "Enter a name for your scan:");
         if(scanName == null) return;
         
-        SwingWorker <Scan, String> scanWorker = new SwingWorker<>() {
+        File drive = toolsPanel.getSelectedDrive();
+        Checkpoint checkpoint = Repository.getInstance().getCheckpoint(drive);
+        if(checkpoint.exists() && !DialogFactory.showConfirmDialog(actionName, "The last scan of this drive was not finished. Do you want to resume it?")){
+            checkpoint.delete();
+        }
+        
+        SwingWorker <Scan, Scanner.Progress> scanWorker = new SwingWorker<>() {
             @Override
             protected Scan doInBackground() throws Exception {
-                File drive = toolsPanel.getSelectedDrive();
-                
-                Scan newScan = new Scanner(new Scanner.Handler(){
+                Scanner scanner = new Scanner(new Scanner.Handler(){
                     @Override
-                    public void setStatus(String status) {
-                        publish(status);
+                    public void setProgress(Scanner.Progress progress) {
+                        publish(progress);
                     }
 
                     @Override
                     public boolean isInterrupted() {
                         return isCancelled();
                     }
-                }).scan(scanName, drive, data.getDriveFolders(drive));
-                return newScan;
+                });
+                scanner.setCheckpoint(checkpoint);
+                scanner.setSpillFolder(Repository.getInstance().getFolder()); //files are not kept in memory while scanning.
+                return scanner.scan(scanName, drive, data.getDriveIndex(drive));
             }
             
             @Override
-            protected void process(List<String> msgs) {
+            protected void process(List<Scanner.Progress> progresses) {
                 if(isDone()) return; //queued values may be set after worker is done.
-                for (String msg : msgs) {
-                    statusPanel.setMessage(msg);
-                }
+                statusPanel.setProgress(progresses.get(progresses.size()-1)); //only the latest report matters.
             }
 
             @Override
@@ -250,13 +257,13 @@ public class MainFrame extends javax.swing.JFrame {
     private void updateScan() {
         if(showLocked("Update")) return;
         
-        SwingWorker <Void, String> updateWorker = new SwingWorker<>() {
+        SwingWorker <Void, Scanner.Progress> updateWorker = new SwingWorker<>() {
             @Override
             protected Void doInBackground() throws Exception {
                 new Scanner(new Scanner.Handler(){
                     @Override
-                    public void setStatus(String status) {
-                        publish(status);
+                    public void setProgress(Scanner.Progress progress) {
+                        publish(progress);
                     }
 
                     @Override
@@ -268,11 +275,9 @@ public class MainFrame extends javax.swing.JFrame {
             }
 
             @Override
-            protected void process(List<String> msgs) {
+            protected void process(List<Scanner.Progress> progresses) {
                 if(isDone()) return; //queued values may be set after worker is done.
-                for (String msg : msgs) {
-                    statusPanel.setMessage(msg);
-                }
+                statusPanel.setProgress(progresses.get(progresses.size()-1)); //only the latest report matters.
             }
 
             @Override
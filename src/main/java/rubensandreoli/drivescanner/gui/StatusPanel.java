@@ -16,7 +16,9 @@
  */
 package rubensandreoli.drivescanner.gui;
 
+import java.util.Map;
 import rubensandreoli.drivescanner.gui.support.StringFormatter;
+import rubensandreoli.drivescanner.io.Scanner;
 
 public class StatusPanel extends javax.swing.JPanel {
 
@@ -29,6 +31,40 @@ public class StatusPanel extends javax.swing.JPanel {
         txtMessage.setCaretPosition(0);
     }
     
+    void setProgress(Scanner.Progress progress){
+        long folders = progress.getFolders();
+        double seconds = Math.max(1L, progress.getElapsed()) / 1000.0;
+        StringBuilder msg = new StringBuilder()
+                .append(StringFormatter.formatNumber(folders)).append(" folders, ")
+                .append(StringFormatter.formatNumber(progress.getFiles())).append(" files, ")
+                .append(StringFormatter.formatSize(progress.getBytes()));
+        if(progress.getSkipped() > 0) msg.append(", ").append(StringFormatter.formatNumber(progress.getSkipped())).append(" unchanged");
+        if(progress.getErrors() > 0) msg.append(", ").append(StringFormatter.formatNumber(progress.getErrors())).append(" unreadable");
+        if(progress.getRevisited() > 0) msg.append(", ").append(StringFormatter.formatNumber(progress.getRevisited())).append(" revisited");
+        if(progress.getUnfollowed() > 0) msg.append(", ").append(StringFormatter.formatNumber(progress.getUnfollowed())).append(" unfollowed");
+        if(progress.getExcluded() > 0) msg.append(", ").append(StringFormatter.formatNumber(progress.getExcluded())).append(" excluded");
+        msg.append(" | ").append(StringFormatter.formatNumber((long) (folders / seconds))).append(" folders/s, ")
+                .append(StringFormatter.formatSize((long) (progress.getBytes() / seconds))).append("/s");
+        long remaining = progress.getRemaining();
+        if(remaining >= 0) msg.append(" | ETA ").append(StringFormatter.formatDuration(remaining));
+        if(progress.getCurrent() != null) msg.append(" | ").append(progress.getCurrent().getPath());
+        setMessage(msg.toString());
+        txtMessage.setToolTipText(getExclusionHits(progress));
+    }
+    
+    /**
+     * @return folders pruned by each exclusion rule, one per line; {@code null} if none.
+     */
+    private static String getExclusionHits(Scanner.Progress progress){
+        if(progress.getExcluded() == 0) return null;
+        StringBuilder hits = new StringBuilder("<html>");
+        for (Map.Entry<String, Long> hit : progress.getExclusionHits().entrySet()) {
+            hits.append(hit.getKey().replace("&", "&amp;").replace("<", "&lt;")).append(": ")
+                    .append(StringFormatter.formatNumber(hit.getValue())).append(" excluded<br>");
+        }
+        return hits.append("</html>").toString();
+    }
+    
     void setTotals(int folders, int files){
         txtTotalFolders.setText(StringFormatter.formatNumber(folders));
         txtTotalFiles.setText(StringFormatter.formatNumber(files));
@@ -36,10 +72,11 @@ public class StatusPanel extends javax.swing.JPanel {
     
     void clearMessage(){
         txtMessage.setText("");
+        txtMessage.setToolTipText(null);
     }
     
     void clear(){
-        txtMessage.setText("");
+        clearMessage();
         txtTotalFolders.setText("");
         txtTotalFiles.setText("");
     }
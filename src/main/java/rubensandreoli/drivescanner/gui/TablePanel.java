@@ -270,10 +270,12 @@ public class TablePanel extends javax.swing.JPanel {
             sorter.setRowFilter(new RowFilter<FolderTableModel, Object>(){
                 @Override
                 public boolean include(RowFilter.Entry<? extends FolderTableModel, ? extends Object> entry) {
-                    Folder.State folderState = ((Folder)entry.getValue(0)).getState();
-                    if(unchanged && folderState == Folder.State.UNCHANGED) return true;
-                    else if(deleted && folderState == Folder.State.DELETED) return true;
+                    Folder folder = (Folder)entry.getValue(0);
+                    Folder.State folderState = folder.getState();
+                    if(deleted && folderState == Folder.State.DELETED) return true;
                     else if(changed && (folderState == Folder.State.INCREASED || folderState == Folder.State.DECREASED)) return true;
+                    else if(changed && folder.hasChangedFiles() && folderState != Folder.State.DELETED) return true; //same size, different files.
+                    else if(unchanged && folderState == Folder.State.UNCHANGED && !folder.hasChangedFiles()) return true;
                     return false;
                 }
             });
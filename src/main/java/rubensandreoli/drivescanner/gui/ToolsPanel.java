@@ -69,6 +69,8 @@ public class ToolsPanel extends javax.swing.JPanel {
     
     void setScan(Scan scan) {
         txtSize.setText(StringFormatter.formatSize(scan.getSize()));
+        long allocatedSize = scan.getAllocatedSize();
+        txtSize.setToolTipText(allocatedSize > 0? "On disk: "+StringFormatter.formatSize(allocatedSize) : null);
         txtDate.setText(StringFormatter.formatDate(scan.getDate()));
         if(scan.isUpdated()){
             txtUpdatedSize.setText(StringFormatter.formatSize(scan.getUpdatedSize()));
@@ -17,7 +17,6 @@
 package rubensandreoli.drivescanner.gui;
 
 import java.awt.Component;
-import java.io.File;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -26,12 +25,19 @@ import java.util.Set;
 import java.util.TreeSet;
 import javax.swing.Icon;
 import javax.swing.JTree;
+import javax.swing.ToolTipManager;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.MutableTreeNode;
 import rubensandreoli.drivescanner.gui.support.IconLoader;
+import rubensandreoli.drivescanner.gui.support.StringFormatter;
+import rubensandreoli.drivescanner.io.FileTable;
 import rubensandreoli.drivescanner.io.Folder;
+import rubensandreoli.drivescanner.io.FolderPath;
+import rubensandreoli.drivescanner.io.Rollup;
 import rubensandreoli.drivescanner.io.Scan;
 
 public class TreePanel extends javax.swing.JPanel {
@@ -41,14 +47,23 @@ public class TreePanel extends javax.swing.JPanel {
 
         private boolean isIncluded;
         private boolean isFolder;
+        private Rollup rollup; //of the node last rendered; null for files.
         
         @Override
         public Component getTreeCellRendererComponent(JTree tree, Object value, boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
             Node node = ((Node)value);
             isIncluded = node.included;
             isFolder = node.folder;
+            rollup = node.rollup;
             return super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, hasFocus);
         }
+
+        @Override
+        public String getToolTipText() { //asked by the tree only for the node under the mouse, so it is formatted only when shown.
+            if(rollup == null) return null;
+            return StringFormatter.formatSize(rollup.getSize())+" in "+StringFormatter.formatNumber(rollup.getFiles())+" files, "
+                    +StringFormatter.formatNumber(rollup.getFolders())+" folders";
+        }
     
         private Icon getIncludedIcon(Icon icon){
             if(isIncluded) return icon;
@@ -101,6 +116,8 @@ public class TreePanel extends javax.swing.JPanel {
         
         private final boolean included;
         private final boolean folder;
+        private Rollup rollup; //totals of the subtree; null for files.
+        private Folder pendingFiles; //added when first expanded; null once added, or if none.
         private TreeSet<Node> childrenSet; //temporary storage to avoid sorting every time.
         
         public Node(String name){
@@ -125,6 +142,15 @@ public class TreePanel extends javax.swing.JPanel {
             }
             childrenSet = null;
         }
+        
+        void deferFiles(Folder folder){ //so that tables are only read for folders that are seen.
+            if(folder.getTotalFiles() > 0) pendingFiles = folder;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return super.isLeaf() && pendingFiles == null;
+        }
 
     }
     //</editor-fold>
@@ -136,6 +162,17 @@ public class TreePanel extends javax.swing.JPanel {
     public TreePanel() {
         initComponents();
         treFiles.setCellRenderer(new ScanTreeCellRenderer());
+        ToolTipManager.sharedInstance().registerComponent(treFiles); //subtree totals.
+        treFiles.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                Node node = (Node) event.getPath().getLastPathComponent();
+                if(node.pendingFiles != null) addFilesToFolderNode(node);
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {}
+        });
     }
 
     void setScan(Scan scan){
@@ -160,38 +197,48 @@ public class TreePanel extends javax.swing.JPanel {
         treFiles.setModel(EMPTY_MODEL);
     }
     
-    private void addFilesToFolderNode(Folder folder, Node node){
-        Set<String> filenames = folder.getFiles().keySet(); //does this improve performance or better to just use inside the loop?
-        for (String filename : filenames) {
-            node.addToBuild(new Node(filename, true, false));
+    private void addFilesToFolderNode(Node node){
+        FileTable files = node.pendingFiles.getFiles(); //read once; spilled files may be read from disk on each call.
+        node.pendingFiles = null;
+        TreeSet<Node> fileNodes = new TreeSet<>(Node.NODE_COMPARATOR);
+        for (int i = 0; i < files.size(); i++) {
+            fileNodes.add(new Node(files.getName(i), true, false));
+        }
+        int[] indices = new int[fileNodes.size()];
+        int i = 0;
+        for (Node fileNode : fileNodes) { //after the subfolders, as when sorted together.
+            indices[i++] = node.getChildCount();
+            node.add(fileNode);
         }
+        ((DefaultTreeModel) treFiles.getModel()).nodesWereInserted(node, indices);
     }
     
     private DefaultMutableTreeNode createTree(Scan scan){
-        Map<String, Node> allNodes = new HashMap<>();
-        String rootPath = scan.getDrive().getPath();
-        var root =  new Node(rootPath, false, true);
-        allNodes.put(rootPath, root);
+        Map<FolderPath, Node> allNodes = new HashMap<>(); //paths are walked up by their parents, without parsing them.
+        var root =  new Node(scan.getDrive().getPath(), false, true);
+        FolderPath drivePath = FolderPath.of(scan.getDrive());
+        root.rollup = scan.getRollup(drivePath);
+        allNodes.put(drivePath, root);
         
         Set<Folder> folders = scan.getFolders(); //does this improve performance or better to just use inside the loop?
         for (Folder folder : folders) {
-            File folderFile = folder.getFile();
-            String folderPath = folderFile.getPath();
+            FolderPath folderPath = folder.getPath();
             var node = allNodes.get(folderPath);
             if(node == null){
-                node = new Node(folderFile.getName());
+                node = new Node(folderPath.getName());
+                node.rollup = scan.getRollup(folderPath);
                 allNodes.put(folderPath, node);
-                addFilesToFolderNode(folder, node);
+                node.deferFiles(folder);
             }else{
-                addFilesToFolderNode(folder, node);
+                node.deferFiles(folder);
                 continue;
             }
             
-            while((folderFile = folderFile.getParentFile()) != null){
-                folderPath = folderFile.getPath();
+            while((folderPath = folderPath.getParent()) != null){
                 var parentNode = allNodes.get(folderPath);
                 if(parentNode == null){
-                    parentNode = new Node(folderFile.getName(), false, true);
+                    parentNode = new Node(folderPath.getName(), false, true);
+                    parentNode.rollup = scan.getRollup(folderPath);
                     allNodes.put(folderPath, parentNode);
                     parentNode.addToBuild(node);
                     node = parentNode;
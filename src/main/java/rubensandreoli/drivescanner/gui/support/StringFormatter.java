@@ -44,5 +44,14 @@ public class StringFormatter {
     public static String formatNumber(int value){
         return NumberFormat.getInstance().format(value);
     }
+    
+    public static String formatNumber(long value){
+        return NumberFormat.getInstance().format(value);
+    }
+    
+    public static String formatDuration(long millis){
+        long seconds = millis / 1000;
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
 
 }
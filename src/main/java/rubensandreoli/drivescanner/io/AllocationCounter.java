@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Space files take on disk during a scan or update.
+ * <br>Sizes are rounded up to the block size of their file store; Java gives no
+ * access to the blocks actually allocated, so sparse and compressed files still
+ * count at their apparent size. Files with a key already counted, as hard links,
+ * count as nothing.
+ * <br>Thread-safe, so it can be shared between the threads of a scan.
+ */
+class AllocationCounter {
+
+    private static final long DEFAULT_BLOCK_SIZE = 4096L; //if the file store cannot tell.
+
+    private final FileKeySet counted = new FileKeySet();
+    private final Map<Long, Long> blockSizes = new ConcurrentHashMap<>(); //by device.
+
+    /**
+     * @param device {@link FileKeySet#UNKNOWN_DEVICE} if the reader has no file keys, so links cannot be told apart.
+     * @return bytes added to the disk usage by the file.
+     */
+    long add(Path file, long size, long device, long inode){
+        if(!counted.add(device, inode)) return 0L;
+        if(size == 0L) return 0L;
+        long blockSize = blockSizes.computeIfAbsent(device, d -> readBlockSize(file)); //unknown devices share one size.
+        return (size + blockSize - 1) / blockSize * blockSize;
+    }
+
+    private static long readBlockSize(Path file){
+        try {
+            long blockSize = Files.getFileStore(file).getBlockSize();
+            return blockSize > 0L? blockSize : DEFAULT_BLOCK_SIZE;
+        } catch (IOException | UnsupportedOperationException | SecurityException ex) {
+            return DEFAULT_BLOCK_SIZE;
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folders crawled by an unfinished scan, so that it can be resumed.
+ * <br>Each crawled folder is appended as a record with its files and the subfolders
+ * it passed on to the crawler; the frontier is every such subfolder without a
+ * record of its own. Records are written at a fixed interval, so a scan that
+ * died is resumed losing at most one interval of work; an incomplete last
+ * record is dropped.
+ */
+public class Checkpoint {
+
+    //<editor-fold defaultstate="collapsed" desc="RECORDS">
+    static class Record{
+        final Folder folder;
+        final boolean isNew; //only new folders have their files read.
+        final List<FolderReader.Subfolder> subfolders;
+
+        Record(Folder folder, boolean isNew, List<FolderReader.Subfolder> subfolders) {
+            this.folder = folder;
+            this.isNew = isNew;
+            this.subfolders = subfolders;
+        }
+    }
+
+    static class Replay{
+        final List<Record> records = new ArrayList<>();
+        private long length; //of the valid part of the file.
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="WRITER">
+    class Writer implements Closeable{
+
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private List<Record> pending = new ArrayList<>();
+        private boolean failed; //stops writing, but not the scan.
+
+        private Writer(FileOutputStream file) {
+            this.file = file;
+            out = new DataOutputStream(new BufferedOutputStream(file));
+        }
+
+        synchronized void add(Record record){
+            pending.add(record);
+        }
+
+        /**
+         * Writes the records added since the last call and syncs them to disk.
+         */
+        void flush(){
+            List<Record> batch;
+            synchronized(this){
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            synchronized(out){ //records are only taken by one flush at a time.
+                if(failed) return;
+                try{
+                    for (Record record : batch) {
+                        writeRecord(out, toBytes(record));
+                    }
+                    out.flush();
+                    file.getFD().sync();
+                }catch(IOException ex){
+                    failed = true;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+            try {
+                out.close();
+            } catch (IOException ex) {}
+        }
+
+    }
+    //</editor-fold>
+
+    public static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final int MAGIC = 0x44534350, VERSION = 2; //1 kept file keys as strings.
+    private static final int MAX_RECORD = 1 << 28; //larger lengths can only come from a damaged file.
+
+    private final File file;
+    private final long interval;
+
+    /**
+     * @param interval milliseconds between writes.
+     */
+    Checkpoint(File file, long interval) {
+        if(interval < 1) throw new IllegalArgumentException("interval must be positive");
+        this.file = file;
+        this.interval = interval;
+    }
+
+    public boolean exists(){
+        return file.isFile();
+    }
+
+    public boolean delete(){
+        return file.delete();
+    }
+
+    long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return {@code null} if there is no checkpoint of the drive, or if it cannot be read.
+     */
+    Replay read(File drive){
+        if(!exists()) return null;
+        Replay replay = new Replay();
+        try(var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            byte[] header = readRecord(in);
+            if(header == null) return null;
+            var headerIn = new DataInputStream(new ByteArrayInputStream(header));
+            if(headerIn.readInt() != MAGIC || headerIn.readInt() != VERSION || !headerIn.readUTF().equals(drive.getPath())) return null;
+            replay.length = Integer.BYTES + header.length;
+
+            byte[] record;
+            while((record = readRecord(in)) != null){
+                replay.records.add(fromBytes(record));
+                replay.length += Integer.BYTES + record.length;
+            }
+        }catch(IOException ex){
+            return null;
+        }
+        return replay;
+    }
+
+    /**
+     * @param replay records to be kept; {@code null} to start over.
+     */
+    Writer open(File drive, Replay replay) throws IOException{
+        if(replay == null){
+            FileOutputStream out = new FileOutputStream(file);
+            Writer writer = new Writer(out);
+            var header = new ByteArrayOutputStream();
+            try(var headerOut = new DataOutputStream(header)){
+                headerOut.writeInt(MAGIC);
+                headerOut.writeInt(VERSION);
+                headerOut.writeUTF(drive.getPath());
+            }
+            writeRecord(writer.out, header.toByteArray());
+            return writer;
+        }
+        try(var channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)){
+            channel.truncate(replay.length); //drops an incomplete last record.
+        }
+        return new Writer(new FileOutputStream(file, true));
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] record) throws IOException{
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    /**
+     * @return {@code null} at the end of the file, or if the record is incomplete.
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException{
+        try{
+            int length = in.readInt();
+            if(length < 0 || length > MAX_RECORD) return null;
+            byte[] record = new byte[length];
+            in.readFully(record);
+            return record;
+        }catch(EOFException ex){
+            return null;
+        }
+    }
+
+    private static byte[] toBytes(Record record) throws IOException{
+        var bytes = new ByteArrayOutputStream();
+        try(var out = new DataOutputStream(bytes)){
+            Folder folder = record.folder;
+            out.writeUTF(folder.getFile().getPath());
+            out.writeBoolean(record.isNew);
+            if(record.isNew){
+                out.writeLong(folder.getModified());
+                writeKey(out, folder.getDevice(), folder.getInode());
+                out.writeLong(folder.getAllocatedSize());
+                FileTable files = folder.getFiles();
+                out.writeInt(files.size());
+                for (int i = 0; i < files.size(); i++) {
+                    out.writeUTF(files.getName(i));
+                    out.writeLong(files.getSize(i));
+                }
+            }
+            out.writeInt(record.subfolders.size());
+            for (FolderReader.Subfolder subfolder : record.subfolders) {
+                out.writeUTF(subfolder.file.getName()); //relative to the folder.
+                writeKey(out, subfolder.device, subfolder.inode);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Record fromBytes(byte[] bytes) throws IOException{
+        var in = new DataInputStream(new ByteArrayInputStream(bytes));
+        Folder folder = new Folder(new File(in.readUTF()));
+        boolean isNew = in.readBoolean();
+        if(isNew){
+            long modified = in.readLong();
+            folder.setStamp(new FolderReader.Stamp(modified, in.readLong(), in.readLong()));
+            long allocated = in.readLong();
+            int totalFiles = in.readInt();
+            FileTable.Builder files = new FileTable.Builder();
+            for (int i = 0; i < totalFiles; i++) {
+                files.add(in.readUTF(), in.readLong());
+            }
+            folder.setFiles(files.build());
+            folder.setAllocatedSize(allocated);
+        }
+        int totalSubfolders = in.readInt();
+        List<FolderReader.Subfolder> subfolders = new ArrayList<>(totalSubfolders);
+        for (int i = 0; i < totalSubfolders; i++) {
+            subfolders.add(new FolderReader.Subfolder(new File(folder.getFile(), in.readUTF()), in.readLong(), in.readLong()));
+        }
+        return new Record(folder, isNew, subfolders);
+    }
+
+    private static void writeKey(DataOutputStream out, long device, long inode) throws IOException{
+        out.writeLong(device);
+        out.writeLong(inode);
+    }
+
+}
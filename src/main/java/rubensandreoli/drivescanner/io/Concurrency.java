@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits that are not cut short by thread interruption; work is stopped through
+ * {@link Scanner.Handler#isInterrupted} instead, and the interruption is kept
+ * for the caller.
+ */
+final class Concurrency {
+
+    private Concurrency() {}
+
+    static void awaitUninterruptibly(CountDownLatch latch){
+        boolean interrupted = false;
+        while(true){
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * @param executor already shut down.
+     */
+    static void awaitUninterruptibly(ExecutorService executor){
+        boolean interrupted = false;
+        while(true){
+            try {
+                if(executor.awaitTermination(1, TimeUnit.DAYS)) break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+}
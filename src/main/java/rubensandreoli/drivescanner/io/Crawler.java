@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Traversal strategy used by {@link Scanner}. A crawler only decides the order
+ * and concurrency in which folders are visited; reading a folder is up to the
+ * {@link Visitor}.
+ */
+abstract class Crawler {
+
+    //<editor-fold defaultstate="collapsed" desc="VISITOR">
+    @FunctionalInterface
+    static interface Visitor{
+        /**
+         * May be invoked concurrently by crawlers that run on more than one thread.
+         * 
+         * @return subfolders that must be crawled; empty if there are none or if the crawl was interrupted.
+         */
+        List<Folder> visit(Folder folder);
+    }
+    //</editor-fold>
+    
+    abstract void crawl(Folder root, Visitor visitor);
+    
+    /**
+     * Runs the action once for every folder, with the same concurrency used
+     * to crawl; sequential by default.
+     */
+    void forEach(Collection<Folder> folders, Consumer<Folder> action){
+        for (Folder folder : folders) {
+            action.accept(folder);
+        }
+    }
+    
+}
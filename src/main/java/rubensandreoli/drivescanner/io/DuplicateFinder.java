@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds files with the same content among the folders of scans.
+ * <br>Files are first grouped by the sizes in the scans, without reading them;
+ * files of a size shared by others are then compared by a hash of their first and
+ * last blocks, and only files still alike are hashed whole. Files are read into
+ * a direct buffer reused by each hashing thread. Size groups are hashed in
+ * parallel and reported as they are resolved.
+ */
+public class DuplicateFinder {
+
+    //<editor-fold defaultstate="collapsed" desc="HANDLER">
+    public static interface Handler{
+        /**
+         * Invoked from the hashing threads, one group at a time.
+         *
+         * @param files two or more files with the same content.
+         */
+        void onDuplicates(long size, List<File> files);
+        boolean isInterrupted();
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="CANDIDATE">
+    /**
+     * File of a size shared by others; only made a {@link File} when read.
+     */
+    private static final class Candidate{
+        final Folder folder; //by its path, shared with the folder's other files.
+        final int index; //in the folder's files.
+
+        Candidate(Folder folder, int index) {
+            this.folder = folder;
+            this.index = index;
+        }
+
+        File toFile(){
+            return new File(folder.getFile(), folder.getFiles().getName(index));
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="SIZE COUNTS">
+    /**
+     * Number of files of each size; open addressing over primitive arrays, since
+     * there is one entry per distinct size of the whole scan.
+     */
+    private static final class SizeCounts{
+
+        private long[] sizes = new long[1024]; //0 marks a free slot; empty files are never counted.
+        private int[] counts = new int[1024];
+        private int total;
+
+        void increment(long size){
+            if(total >= sizes.length * 0.7) grow();
+            int i = indexOf(sizes, size);
+            if(sizes[i] == 0L){
+                sizes[i] = size;
+                total++;
+            }
+            if(counts[i] < Integer.MAX_VALUE) counts[i]++;
+        }
+
+        int get(long size){
+            int i = indexOf(sizes, size);
+            return sizes[i] == 0L? 0 : counts[i];
+        }
+
+        private static int indexOf(long[] sizes, long size){
+            int mask = sizes.length - 1;
+            int i = Long.hashCode(size * 0x9e3779b97f4a7c15L) & mask;
+            while(sizes[i] != 0L && sizes[i] != size){ //linear probing.
+                i = (i+1) & mask;
+            }
+            return i;
+        }
+
+        private void grow(){
+            long[] newSizes = new long[sizes.length * 2];
+            int[] newCounts = new int[counts.length * 2];
+            for (int i = 0; i < sizes.length; i++) {
+                if(sizes[i] == 0L) continue;
+                int j = indexOf(newSizes, sizes[i]);
+                newSizes[j] = sizes[i];
+                newCounts[j] = counts[i];
+            }
+            sizes = newSizes;
+            counts = newCounts;
+        }
+
+    }
+    //</editor-fold>
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int READ_SIZE = 1 << 20; //bytes read at a time.
+    private static final String ALGORITHM = "SHA-256";
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_SIZE)); //released with the hashing threads.
+
+    private final int parallelism;
+    private long minSize = 1L;
+
+    /**
+     * @param parallelism number of size groups hashed at the same time.
+     */
+    public DuplicateFinder(int parallelism) {
+        if(parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param minSize files smaller than this are ignored; empty files are always ignored.
+     */
+    public void setMinSize(long minSize) {
+        this.minSize = Math.max(1L, minSize);
+    }
+
+    /**
+     * Blocks until every group is resolved, or until interrupted.
+     * <br>Files that cannot be read, as the ones deleted since scanned, are left out.
+     *
+     * @param folders from one or more scans; the same folder should not be given twice.
+     */
+    public void find(Collection<Folder> folders, Handler handler){
+        SizeCounts counts = new SizeCounts();
+        for (Folder folder : folders) {
+            FileTable files = folder.getFiles();
+            for (int i = 0; i < files.size(); i++) {
+                long size = files.getSize(i);
+                if(size >= minSize) counts.increment(size);
+            }
+        }
+        if(handler.isInterrupted()) return;
+
+        Map<Long, List<Candidate>> groups = new HashMap<>(); //only sizes shared by more than one file.
+        for (Folder folder : folders) {
+            FileTable files = folder.getFiles();
+            for (int i = 0; i < files.size(); i++) {
+                long size = files.getSize(i);
+                if(size >= minSize && counts.get(size) > 1){
+                    groups.computeIfAbsent(size, s -> new ArrayList<>()).add(new Candidate(folder, i));
+                }
+            }
+        }
+        if(handler.isInterrupted()) return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        for (Map.Entry<Long, List<Candidate>> group : groups.entrySet()) {
+            executor.execute(() -> resolve(group.getKey(), group.getValue(), handler));
+        }
+        executor.shutdown();
+        Concurrency.awaitUninterruptibly(executor);
+    }
+
+    private static void resolve(long size, List<Candidate> candidates, Handler handler){
+        List<File> files = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            files.add(candidate.toFile());
+        }
+        boolean partialIsWhole = size <= 2L * BLOCK_SIZE; //first and last blocks cover the whole file.
+        for (List<File> alike : group(files, file -> hashEnds(file, size), handler)) {
+            if(partialIsWhole){
+                report(size, alike, handler);
+            }else{
+                for (List<File> same : group(alike, file -> hashAll(file, size), handler)) {
+                    report(size, same, handler);
+                }
+            }
+        }
+    }
+
+    private static void report(long size, List<File> files, Handler handler){
+        if(handler.isInterrupted()) return;
+        synchronized(handler){
+            handler.onDuplicates(size, files);
+        }
+    }
+
+    @FunctionalInterface
+    private static interface Hasher{
+        byte[] hash(File file) throws IOException;
+    }
+
+    /**
+     * @return groups of more than one file with the same hash.
+     */
+    private static Collection<List<File>> group(List<File> files, Hasher hasher, Handler handler){
+        Map<ByteBuffer, List<File>> byHash = new HashMap<>();
+        for (File file : files) {
+            if(handler.isInterrupted()) return List.of();
+            try {
+                byHash.computeIfAbsent(ByteBuffer.wrap(hasher.hash(file)), h -> new ArrayList<>()).add(file);
+            } catch (IOException | SecurityException ex) {} //left out.
+        }
+        byHash.values().removeIf(group -> group.size() < 2);
+        return byHash.values();
+    }
+
+    private static byte[] hashEnds(File file, long size) throws IOException{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            if(channel.size() != size) throw new IOException("changed since scanned: "+file);
+            MessageDigest digest = createDigest();
+            ByteBuffer buffer = BUFFERS.get().clear().limit(BLOCK_SIZE);
+            read(channel, buffer, 0L);
+            digest.update(buffer);
+            if(size > BLOCK_SIZE){
+                buffer.clear().limit(BLOCK_SIZE);
+                read(channel, buffer, Math.max(BLOCK_SIZE, size - BLOCK_SIZE));
+                digest.update(buffer);
+            }
+            return digest.digest();
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+        while(buffer.hasRemaining()){
+            int read = channel.read(buffer, position + buffer.position());
+            if(read == -1) break;
+        }
+        buffer.flip();
+    }
+
+    private static byte[] hashAll(File file, long size) throws IOException{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            if(channel.size() != size) throw new IOException("changed since scanned: "+file);
+            MessageDigest digest = createDigest();
+            ByteBuffer buffer = BUFFERS.get();
+            for (long position = 0; position < size; position += buffer.limit()) {
+                buffer.clear();
+                read(channel, buffer, position);
+                if(!buffer.hasRemaining()) throw new IOException("changed since scanned: "+file); //shorter than its size.
+                digest.update(buffer);
+            }
+            return digest.digest();
+        }
+    }
+
+    private static MessageDigest createDigest(){
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ALGORITHM+" is required by every Java platform", ex);
+        }
+    }
+
+
+}
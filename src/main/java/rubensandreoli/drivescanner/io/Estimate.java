@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.Serializable;
+
+/**
+ * Extrapolated totals of a folder and everything under it, from a sampled scan;
+ * see {@link Scanner#estimate}.
+ * <br>Margins are half the width of a 95% confidence interval.
+ */
+public class Estimate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long size, sizeMargin;
+    private final long files, filesMargin;
+
+    Estimate(long size, long sizeMargin, long files, long filesMargin) {
+        this.size = size;
+        this.sizeMargin = sizeMargin;
+        this.files = files;
+        this.filesMargin = filesMargin;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getSizeMargin() {
+        return sizeMargin;
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public long getFilesMargin() {
+        return filesMargin;
+    }
+
+    @Override
+    public String toString() {
+        return size+" +/- "+sizeMargin+" bytes, "+files+" +/- "+filesMargin+" files";
+    }
+
+}
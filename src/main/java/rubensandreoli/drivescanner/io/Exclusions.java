@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Folders excluded from a scan; they are neither listed nor crawled.
+ * <br>Rules are {@code glob:} or {@code regex:} patterns, glob if no prefix is given.
+ * A rule containing a {@code /} is matched against the whole path, with {@code /}
+ * as separator; otherwise against the folder name only. Glob {@code *} and {@code ?}
+ * do not cross separators, {@code **} does.
+ * <br>Immutable, so it can be shared between threads.
+ */
+public class Exclusions {
+
+    private static final String GLOB = "glob:", REGEX = "regex:";
+    private static final Pattern LITERAL_GLOB = Pattern.compile("[^*?\\[\\]{}\\\\/]+");
+    private static final Pattern LITERAL_REGEX = Pattern.compile("[\\w \\-]+");
+
+    private final List<String> rules;
+    private final Map<String, Integer> names = new HashMap<>(); //literal names; checked first, in constant time.
+    private final List<Pattern> namePatterns = new ArrayList<>();
+    private final List<Integer> nameRules = new ArrayList<>(); //index of the rule of each name pattern.
+    private final List<Pattern> pathPatterns = new ArrayList<>();
+    private final List<Integer> pathRules = new ArrayList<>();
+
+    /**
+     * @throws IllegalArgumentException if a rule is empty or is not a valid pattern.
+     */
+    public Exclusions(Collection<String> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        for (int i = 0; i < this.rules.size(); i++) {
+            compile(this.rules.get(i), i);
+        }
+    }
+
+    private void compile(String rule, int index){
+        boolean isRegex = rule.startsWith(REGEX);
+        String pattern = isRegex? rule.substring(REGEX.length()) : rule.startsWith(GLOB)? rule.substring(GLOB.length()) : rule;
+        if(pattern.isEmpty()) throw new IllegalArgumentException("empty exclusion rule: "+rule);
+
+        if(LITERAL_GLOB.matcher(pattern).matches() && (!isRegex || LITERAL_REGEX.matcher(pattern).matches())){
+            names.putIfAbsent(normalize(pattern), index); //an earlier rule with the same name takes the hits.
+            return;
+        }
+
+        Pattern compiled;
+        try{
+            compiled = Pattern.compile(isRegex? pattern : toRegex(pattern), FolderPath.IGNORE_CASE? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        }catch(PatternSyntaxException ex){
+            throw new IllegalArgumentException("invalid exclusion rule: "+rule, ex);
+        }
+        if(pattern.indexOf('/') != -1){
+            pathPatterns.add(compiled);
+            pathRules.add(index);
+        }else{
+            namePatterns.add(compiled);
+            nameRules.add(index);
+        }
+    }
+
+    private static String toRegex(String glob){
+        StringBuilder regex = new StringBuilder();
+        int groups = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch(c){
+                case '*':
+                    if(i+1 < glob.length() && glob.charAt(i+1) == '*'){
+                        regex.append(".*");
+                        i++;
+                    }else{
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '[':
+                    int end = glob.indexOf(']', i+1);
+                    if(end == -1) throw new IllegalArgumentException("unclosed class in glob: "+glob);
+                    String set = glob.substring(i+1, end);
+                    regex.append('[').append(set.startsWith("!")? "^"+set.substring(1) : set).append(']');
+                    i = end;
+                    break;
+                case '{':
+                    regex.append("(?:");
+                    groups++;
+                    break;
+                case '}':
+                    if(groups == 0) throw new IllegalArgumentException("unopened group in glob: "+glob);
+                    regex.append(')');
+                    groups--;
+                    break;
+                case ',':
+                    regex.append(groups > 0? "|" : ",");
+                    break;
+                case '\\':
+                    if(++i == glob.length()) throw new IllegalArgumentException("dangling escape in glob: "+glob);
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        if(groups > 0) throw new IllegalArgumentException("unclosed group in glob: "+glob);
+        return regex.toString();
+    }
+
+    private static String normalize(String name){
+        return FolderPath.IGNORE_CASE? FolderPath.foldCase(name) : name;
+    }
+
+    /**
+     * @return index of a rule matching the folder, literal names being checked
+     * before patterns; -1 if not excluded.
+     */
+    int match(File folder){
+        String name = folder.getName();
+        if(!names.isEmpty()){
+            Integer index = names.get(normalize(name));
+            if(index != null) return index;
+        }
+        for (int i = 0; i < namePatterns.size(); i++) {
+            if(namePatterns.get(i).matcher(name).matches()) return nameRules.get(i);
+        }
+        if(!pathPatterns.isEmpty()){
+            String path = File.separatorChar == '/'? folder.getPath() : folder.getPath().replace(File.separatorChar, '/');
+            for (int i = 0; i < pathPatterns.size(); i++) {
+                if(pathPatterns.get(i).matcher(path).matches()) return pathRules.get(i);
+            }
+        }
+        return -1;
+    }
+
+    public List<String> getRules() {
+        return rules;
+    }
+
+    public boolean isEmpty(){
+        return rules.isEmpty();
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Files added, removed and resized in a folder since it was scanned; see {@link Folder#getChanges}.
+ * <br>Tables are compared in a single pass over both, as they are sorted by name.
+ */
+public class FileChanges {
+
+    static final FileChanges NONE = new FileChanges(0, 0, 0, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+    private final int added, removed, resized;
+    private final List<String> addedNames, removedNames, resizedNames; //empty if only counted.
+
+    private FileChanges(int added, int removed, int resized, List<String> addedNames, List<String> removedNames, List<String> resizedNames) {
+        this.added = added;
+        this.removed = removed;
+        this.resized = resized;
+        this.addedNames = addedNames;
+        this.removedNames = removedNames;
+        this.resizedNames = resizedNames;
+    }
+
+    /**
+     * @param names if the names of the files are listed, or only counted.
+     */
+    static FileChanges compare(FileTable original, FileTable current, boolean names){
+        int added = 0, removed = 0, resized = 0;
+        List<String> addedNames = names? new ArrayList<>() : Collections.emptyList();
+        List<String> removedNames = names? new ArrayList<>() : Collections.emptyList();
+        List<String> resizedNames = names? new ArrayList<>() : Collections.emptyList();
+        int i = 0, j = 0;
+        while(i < original.size() || j < current.size()){
+            int comparison = i == original.size()? 1 : j == current.size()? -1 : FileTable.compareNames(original, i, current, j);
+            if(comparison < 0){
+                removed++;
+                if(names) removedNames.add(original.getName(i));
+                i++;
+            }else if(comparison > 0){
+                added++;
+                if(names) addedNames.add(current.getName(j));
+                j++;
+            }else{
+                if(original.getSize(i) != current.getSize(j)){
+                    resized++;
+                    if(names) resizedNames.add(current.getName(j));
+                }
+                i++;
+                j++;
+            }
+        }
+        if(added + removed + resized == 0) return NONE;
+        return new FileChanges(added, removed, resized, addedNames, removedNames, resizedNames);
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getResized() {
+        return resized;
+    }
+
+    public boolean isEmpty(){
+        return added + removed + resized == 0;
+    }
+
+    /**
+     * @return names in order; empty if only counted.
+     */
+    public List<String> getAddedNames() {
+        return Collections.unmodifiableList(addedNames);
+    }
+
+    /**
+     * @return names in order; empty if only counted.
+     */
+    public List<String> getRemovedNames() {
+        return Collections.unmodifiableList(removedNames);
+    }
+
+    /**
+     * @return names in order; empty if only counted.
+     */
+    public List<String> getResizedNames() {
+        return Collections.unmodifiableList(resizedNames);
+    }
+
+    @Override
+    public String toString() {
+        return added+" added, "+removed+" removed, "+resized+" resized";
+    }
+
+}
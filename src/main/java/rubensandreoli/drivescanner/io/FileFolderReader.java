@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+
+/**
+ * {@code java.io} reader; costs a listing plus up to three attribute queries per entry.
+ */
+class FileFolderReader extends FolderReader {
+
+    @Override
+    Listing read(File folder, boolean withFiles, AllocationCounter allocation) {
+        Stamp stamp = readStamp(folder);
+        File[] folderFiles = folder.listFiles();
+        if(folderFiles == null) return null;
+        Listing listing = new Listing(withFiles);
+        listing.stamp = stamp;
+        listing.entries = folderFiles.length;
+        for (File childFile : folderFiles) {
+            if (withFiles && childFile.isFile()) {
+                long size = childFile.length();
+                listing.builder.add(childFile.getName(), size);
+                if(allocation != null) listing.allocated += allocation.add(childFile.toPath(), size, FileKeySet.UNKNOWN_DEVICE, 0L); //no file keys; links count once each.
+            }else if(childFile.isDirectory()){
+                listing.subfolders.add(new Subfolder(childFile));
+            }
+        }
+        return listing.build();
+    }
+
+    @Override
+    Stamp readStamp(File folder) {
+        long modified = folder.lastModified();
+        return modified == 0L? null : new Stamp(modified); //no file keys in java.io.
+    }
+
+}
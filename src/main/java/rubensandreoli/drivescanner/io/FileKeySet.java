@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * File keys of visited folders, or of counted files.
+ * <br>Keys are device and inode numbers, as read from the {@code unix} attribute
+ * view; inodes are kept as primitives in one open addressing table per device,
+ * 12 to 23 bytes per folder.
+ * <br>Synchronized, so it can be shared between the threads of a scan.
+ */
+class FileKeySet {
+
+    //<editor-fold defaultstate="collapsed" desc="INODE SET">
+    private static final class InodeSet{
+
+        private static final float LOAD_FACTOR = 0.7f;
+
+        private long[] table = new long[64]; //0 marks a free slot.
+        private boolean hasZero; //inode 0 cannot be stored in the table.
+        private int size;
+
+        boolean add(long inode){
+            if(inode == 0L){
+                if(hasZero) return false;
+                return hasZero = true;
+            }
+            if(size >= table.length * LOAD_FACTOR) grow();
+            if(!insert(table, inode)) return false;
+            size++;
+            return true;
+        }
+
+        private static boolean insert(long[] table, long inode){
+            int mask = table.length - 1;
+            for (int i = mix(inode) & mask; ; i = (i+1) & mask) { //linear probing.
+                if(table[i] == inode) return false;
+                if(table[i] == 0L){
+                    table[i] = inode;
+                    return true;
+                }
+            }
+        }
+
+        private void grow(){
+            long[] newTable = new long[table.length * 2];
+            for (long inode : table) {
+                if(inode != 0L) insert(newTable, inode);
+            }
+            table = newTable;
+        }
+
+        private static int mix(long value){ //inodes are often sequential; spreads them over the table.
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            return (int) value;
+        }
+
+    }
+    //</editor-fold>
+
+    static final long UNKNOWN_DEVICE = Long.MIN_VALUE;
+
+    private final Map<Long, InodeSet> devices = new HashMap<>();
+
+    /**
+     * @param device as in {@link FolderReader.Stamp}; keys of {@link #UNKNOWN_DEVICE} are never added.
+     * @return {@code false} if the key was already added.
+     */
+    synchronized boolean add(long device, long inode){
+        if(device == UNKNOWN_DEVICE) return true; //cannot tell, so it is taken as not visited.
+        return devices.computeIfAbsent(device, d -> new InodeSet()).add(inode);
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable names and sizes of a folder's files, sorted by name.
+ * <br>Names are encoded as in {@link java.io.DataOutput#writeUTF}, which keeps
+ * any name intact and sorts the same as {@link String#compareTo}, as names have
+ * no NUL. The whole table is packed in a single buffer: the number of files and
+ * their total size, then the sizes, the offsets of the names and the names. A
+ * file costs the bytes of its name plus 12, instead of the entry, boxed size
+ * and string of a map.
+ * <br>The buffer is on the heap, or a view of a memory mapped run file; see
+ * {@link RunFile}. Either way, it is read in place.
+ */
+public final class FileTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("packed", byte[].class)};
+
+    //<editor-fold defaultstate="collapsed" desc="BUILDER">
+    /**
+     * Not synchronized; names must not repeat.
+     */
+    static final class Builder{
+
+        private static final class Entry{
+            final byte[] name;
+            final long size;
+
+            Entry(byte[] name, long size) {
+                this.name = name;
+                this.size = size;
+            }
+        }
+
+        private final List<Entry> entries = new ArrayList<>();
+        private int length; //of all names.
+        private boolean sorted = true; //spares sorting tables read back in order.
+
+        Builder add(String name, long size){
+            Entry entry = new Entry(encode(name), size);
+            if(sorted && !entries.isEmpty() && Arrays.compareUnsigned(entries.get(entries.size()-1).name, entry.name) > 0) sorted = false;
+            entries.add(entry);
+            length += entry.name.length;
+            return this;
+        }
+
+        FileTable build(){
+            if(entries.isEmpty()) return EMPTY;
+            if(!sorted) entries.sort((e1, e2) -> Arrays.compareUnsigned(e1.name, e2.name));
+            int count = entries.size();
+            ByteBuffer table = ByteBuffer.allocate(HEADER + count * (Long.BYTES + Integer.BYTES) + Integer.BYTES + length);
+            long total = 0L;
+            for (Entry entry : entries) {
+                total += entry.size;
+            }
+            table.putInt(count).putLong(total);
+            for (Entry entry : entries) {
+                table.putLong(entry.size);
+            }
+            int offset = 0;
+            for (Entry entry : entries) {
+                table.putInt(offset);
+                offset += entry.name.length;
+            }
+            table.putInt(offset);
+            for (Entry entry : entries) {
+                table.put(entry.name);
+            }
+            return new FileTable(table.flip());
+        }
+
+    }
+    //</editor-fold>
+
+    private static final int HEADER = Integer.BYTES + Long.BYTES; //number of files and total size.
+
+    public static final FileTable EMPTY = new FileTable(ByteBuffer.allocate(HEADER + Integer.BYTES).putInt(0).putLong(0L).putInt(0).flip());
+
+    private transient ByteBuffer table; //final, but assigned by readObject.
+    private transient int count, offsetsStart, namesStart;
+
+    /**
+     * @param table packed, from its position to its limit; not copied.
+     */
+    private FileTable(ByteBuffer table) {
+        init(table);
+    }
+
+    private void init(ByteBuffer table){
+        this.table = table.slice(); //absolute positions start at 0.
+        count = this.table.getInt(0);
+        offsetsStart = HEADER + count * Long.BYTES;
+        namesStart = offsetsStart + (count + 1) * Integer.BYTES;
+    }
+
+    static FileTable of(Map<String, Long> files){
+        Builder builder = new Builder();
+        for (Map.Entry<String, Long> file : files.entrySet()) {
+            builder.add(file.getKey(), file.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param packed as written by {@link #writeTo}; read in place, not copied.
+     */
+    static FileTable wrap(ByteBuffer packed){
+        return new FileTable(packed);
+    }
+
+    /**
+     * Copies the packed table to the buffer.
+     */
+    void writeTo(ByteBuffer buffer){
+        buffer.put(table.duplicate().clear());
+    }
+
+    /**
+     * @return bytes of the packed table.
+     */
+    int getLength(){
+        return table.capacity();
+    }
+
+    public int size(){
+        return count;
+    }
+
+    public boolean isEmpty(){
+        return count == 0;
+    }
+
+    /**
+     * @param index between 0 and {@link #size}, in name order.
+     * @return a new string on each call.
+     */
+    public String getName(int index){
+        return decode(table, namesStart + nameOffset(index), namesStart + nameOffset(index+1));
+    }
+
+    /**
+     * @param index between 0 and {@link #size}, in name order.
+     */
+    public long getSize(int index){
+        return table.getLong(HEADER + index * Long.BYTES);
+    }
+
+    public long getTotalSize(){
+        return table.getLong(Integer.BYTES);
+    }
+
+    private int nameOffset(int index){
+        return table.getInt(offsetsStart + index * Integer.BYTES);
+    }
+
+    /**
+     * @return index of the file; -1 if there is no file with the name.
+     */
+    public int indexOf(String name){
+        byte[] encoded = encode(name);
+        int low = 0, high = count - 1;
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            int comparison = compareName(mid, encoded);
+            if(comparison < 0) low = mid + 1;
+            else if(comparison > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int compareName(int index, byte[] name){
+        int start = namesStart + nameOffset(index), end = namesStart + nameOffset(index+1);
+        for (int i = start, j = 0; i < end && j < name.length; i++, j++) {
+            int comparison = Byte.compareUnsigned(table.get(i), name[j]);
+            if(comparison != 0) return comparison;
+        }
+        return (end - start) - name.length;
+    }
+
+    /**
+     * Compares names of two tables without decoding them.
+     *
+     * @return as {@link String#compareTo} would for the names.
+     */
+    static int compareNames(FileTable table1, int index1, FileTable table2, int index2){
+        int start1 = table1.namesStart + table1.nameOffset(index1), end1 = table1.namesStart + table1.nameOffset(index1+1);
+        int start2 = table2.namesStart + table2.nameOffset(index2), end2 = table2.namesStart + table2.nameOffset(index2+1);
+        ByteBuffer bytes1 = table1.table, bytes2 = table2.table;
+        for (int i = start1, j = start2; i < end1 && j < end2; i++, j++) {
+            int comparison = Byte.compareUnsigned(bytes1.get(i), bytes2.get(j));
+            if(comparison != 0) return comparison;
+        }
+        return (end1 - start1) - (end2 - start2);
+    }
+
+    /**
+     * Tables are equal if they have the same files with the same sizes; compared packed.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof FileTable)) return false;
+        return table.equals(((FileTable) obj).table);
+    }
+
+    @Override
+    public int hashCode() {
+        return table.hashCode();
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="SERIALIZATION">
+    private void writeObject(ObjectOutputStream out) throws IOException{
+        byte[] packed = new byte[getLength()];
+        table.duplicate().clear().get(packed); //mapped tables are saved as any other.
+        out.putFields().put("packed", packed);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        init(ByteBuffer.wrap((byte[]) in.readFields().get("packed", null)));
+    }
+    //</editor-fold>
+
+    //<editor-fold defaultstate="collapsed" desc="ENCODING">
+    private static byte[] encode(String name){
+        int length = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F? 1 : c <= 0x07FF? 2 : 3;
+        }
+        byte[] bytes = new byte[length];
+        int b = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if(c >= 0x0001 && c <= 0x007F){
+                bytes[b++] = (byte) c;
+            }else if(c <= 0x07FF){ //NUL included, as two bytes.
+                bytes[b++] = (byte) (0xC0 | (c >> 6));
+                bytes[b++] = (byte) (0x80 | (c & 0x3F));
+            }else{ //surrogates are encoded one by one.
+                bytes[b++] = (byte) (0xE0 | (c >> 12));
+                bytes[b++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[b++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return bytes;
+    }
+
+    private static String decode(ByteBuffer bytes, int start, int end){
+        char[] chars = new char[end - start];
+        int length = 0;
+        for (int b = start; b < end;) {
+            int c = bytes.get(b++) & 0xFF;
+            if(c < 0x80){
+                chars[length++] = (char) c;
+            }else if(c < 0xE0){
+                chars[length++] = (char) (((c & 0x1F) << 6) | (bytes.get(b++) & 0x3F));
+            }else{
+                chars[length++] = (char) (((c & 0x0F) << 12) | ((bytes.get(b++) & 0x3F) << 6) | (bytes.get(b++) & 0x3F));
+            }
+        }
+        return new String(chars, 0, length);
+    }
+    //</editor-fold>
+
+}
@@ -17,9 +17,9 @@
 package rubensandreoli.drivescanner.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 public class Folder implements Serializable, Comparable<Folder> {
@@ -30,35 +30,154 @@ public class Folder implements Serializable, Comparable<Folder> {
         UNCHANGED, DELETED, INCREASED, DECREASED
     };
 
-    private final File file;
+    private FolderPath path; //final, but assigned by readObject.
     private long originalSize, currentSize;
     private State state;
-    private Map<String, Long> files;
+    private FileTable files; //null if spilled.
+    private boolean spilled; //files are in a run file; see Scanner#setSpillFolder.
+    private long filesOffset;
+    private int totalFiles; //only kept if spilled.
+    private int filesLength, originalLength; //bytes the tables take in the run file; 0 if saved before they were kept.
+    private transient RunFile run; //of the spilled files; null if not found.
+    private long modified; //when the folder was last read; 0 if unknown (older scans).
+    private long device = FileKeySet.UNKNOWN_DEVICE, inode; //file key when the folder was last read; unknown device if none.
+    private long allocatedSize; //on disk, of the current files; 0 if not counted.
+    private FileTable originalFiles; //as first scanned, kept once changed by an update; null if not kept or spilled.
+    private long originalOffset = -1L; //of the original files, if spilled; -1 if not kept there.
+    private int addedFiles, removedFiles, resizedFiles; //since first scanned; 0 in scans saved before they were counted.
 
     public Folder(File file) {
-        this.file = file;
+        this(FolderPath.of(file));
     }
     
-    public static Map<String, Long> getNewFileMap(){
-        return new HashMap<>(); //ignored files' order for performance reasons.
+    /**
+     * @param path shared with other folders under the same parents.
+     */
+    Folder(FolderPath path) {
+        this.path = path;
     }
-
-    void setFiles(Map<String, Long> files){
+    
+    /**
+     * Shares the parents of the path with the interner's other paths.
+     */
+    void intern(FolderPath.Interner interner){
+        path = interner.intern(path);
+    }
+    
+    /**
+     * @param files {@code null} if the folder was deleted.
+     */
+    void setFiles(FileTable files){
+        if(files != null && spilled && state != State.DELETED && files.equals(getFiles())) return; //unchanged, so not written again.
+        FileTable original = state == null? null : getOriginalFiles(); //null if new.
+        if(original != null && spilled && originalOffset < 0L){ //the current files are the original ones, already in the run file.
+            originalOffset = filesOffset;
+            originalLength = filesLength;
+        }
+        spilled = false;
+        if(originalOffset < 0L) run = null; //otherwise still holds the original files.
         if(files == null){
-            this.files = Collections.EMPTY_MAP;
+            this.files = FileTable.EMPTY;
             state = State.DELETED;
             currentSize = 0L;
+            allocatedSize = 0L;
         }else{
-            this.files = Collections.unmodifiableMap(files);
+            this.files = files;
             calculateSize();
         }
+        if(original != null) countChanges(original);
     }
     
-    private void calculateSize(){ //FOR (23900ns); STREAM (3327400ns); PARALLEL (3617200ns)
-        currentSize = 0L;
-        for (long fileSize : files.values()) {
-            currentSize += fileSize;
+    private void countChanges(FileTable original){
+        FileChanges changes = FileChanges.compare(original, files, false);
+        addedFiles = changes.getAdded();
+        removedFiles = changes.getRemoved();
+        resizedFiles = changes.getResized();
+        if(changes.isEmpty()){ //current files are the original ones again.
+            originalFiles = null;
+            originalOffset = -1L;
+        }else if(originalOffset < 0L){
+            originalFiles = original; //otherwise kept in the run file.
         }
+    }
+    
+    /**
+     * Moves the files to the run file, from memory or from another run file;
+     * tables already in the run file are not written again.
+     */
+    void spill(RunFile target) throws IOException{
+        boolean originalMoves = originalFiles != null || (originalOffset >= 0L && run != target);
+        boolean filesMove = !spilled || run != target;
+        if(!originalMoves && !filesMove) return;
+        FileTable original = originalMoves? getOriginalFiles() : null; //both read before the run file is replaced.
+        FileTable table = filesMove? getFiles() : null;
+        if(originalMoves){
+            originalOffset = target.append(original);
+            originalLength = RunFile.getEntryLength(original);
+            originalFiles = null;
+        }
+        if(filesMove){
+            filesOffset = target.append(table);
+            filesLength = RunFile.getEntryLength(table);
+            totalFiles = table.size();
+            spilled = true;
+            files = null;
+        }
+        run = target;
+    }
+    
+    /**
+     * @return bytes of the run file taken by the folder's tables.
+     */
+    long getSpilledLength(){
+        return (spilled? filesLength : 0L) + (originalOffset >= 0L? originalLength : 0L);
+    }
+    
+    /**
+     * @return files as first scanned; the current ones if not changed since.
+     */
+    private FileTable getOriginalFiles(){
+        if(originalFiles != null) return originalFiles;
+        if(originalOffset < 0L) return getFiles();
+        if(run == null) return FileTable.EMPTY;
+        try {
+            return run.read(originalOffset);
+        } catch (IOException ex) {
+            return FileTable.EMPTY;
+        }
+    }
+    
+    /**
+     * @param run where the spilled files were written; ignored if not spilled.
+     */
+    void attach(RunFile run){
+        if(spilled || originalOffset >= 0L) this.run = run;
+    }
+    
+    boolean isSpilled(){
+        return spilled;
+    }
+    
+    void setAllocatedSize(long allocatedSize){
+        this.allocatedSize = allocatedSize;
+    }
+    
+    void setStamp(FolderReader.Stamp stamp){
+        if(stamp == null) return;
+        modified = stamp.modified;
+        device = stamp.device;
+        inode = stamp.inode;
+    }
+    
+    /**
+     * Folders that were deleted are never considered stamped, so they are always read again.
+     */
+    boolean isStamped(FolderReader.Stamp stamp){
+        return modified != 0L && state != State.DELETED && modified == stamp.modified && device == stamp.device && inode == stamp.inode;
+    }
+    
+    private void calculateSize(){
+        currentSize = files.getTotalSize(); //added up once, when the table is built.
         if(state == null){ //new.
             state = State.UNCHANGED;
             originalSize = currentSize;
@@ -73,8 +192,15 @@ public class Folder implements Serializable, Comparable<Folder> {
         }
     }
 
+    /**
+     * @return a new file on each call; see {@link #getPath}.
+     */
     public File getFile() {
-        return file;
+        return path.toFile();
+    }
+    
+    public FolderPath getPath() {
+        return path;
     }
 
     public long getCurrentSize() {
@@ -85,38 +211,138 @@ public class Folder implements Serializable, Comparable<Folder> {
         return originalSize;
     }
     
+    /**
+     * @return space the current files take on disk, hard links counted only in the
+     * first folder read; 0 if not counted. See {@link Scanner#setCountAllocated}.
+     */
+    public long getAllocatedSize(){
+        return allocatedSize;
+    }
+    
     public int getTotalFiles(){
-        return files.size();
+        return spilled? totalFiles : files.size();
     }
     
-    public Map<String, Long> getFiles(){
-        return files;
+    /**
+     * @return files' sizes by name; if spilled, read from the run file on each call,
+     * and empty if it cannot be read.
+     */
+    public FileTable getFiles(){
+        if(!spilled) return files;
+        if(run == null) return FileTable.EMPTY;
+        try {
+            return run.read(filesOffset);
+        } catch (IOException ex) {
+            return FileTable.EMPTY;
+        }
     }
 
     public State getState() {
         return state;
     }
+    
+    /**
+     * @return files added since the folder was scanned; counted when updated.
+     */
+    public int getAddedFiles() {
+        return addedFiles;
+    }
+    
+    /**
+     * @return files removed since the folder was scanned; counted when updated.
+     */
+    public int getRemovedFiles() {
+        return removedFiles;
+    }
+    
+    /**
+     * @return files whose size changed since the folder was scanned; counted when updated.
+     */
+    public int getResizedFiles() {
+        return resizedFiles;
+    }
+    
+    /**
+     * @return {@code true} if any file changed, even if the folder's size did not.
+     */
+    public boolean hasChangedFiles(){
+        return addedFiles + removedFiles + resizedFiles > 0;
+    }
+    
+    /**
+     * @return names of the files changed since the folder was scanned; if spilled,
+     * both tables are read from the run file.
+     */
+    public FileChanges getChanges(){
+        if(!hasChangedFiles()) return FileChanges.NONE;
+        return FileChanges.compare(getOriginalFiles(), getFiles(), true);
+    }
+    
+    long getDevice() {
+        return device;
+    }
+    
+    long getInode() {
+        return inode;
+    }
+    
+    /**
+     * @return folder's modified time when it was last read; 0 if unknown.
+     */
+    public long getModified() {
+        return modified;
+    }
+
+    /**
+     * Scans saved before file tables kept the files in a map, and scans saved
+     * before folder paths kept a file; both are converted.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        boolean hasFile = fields.getObjectStreamClass().getField("file") != null; //not a field anymore, so only asked for if in the stream.
+        path = hasFile? FolderPath.of((File) fields.get("file", null)) : (FolderPath) fields.get("path", null);
+        originalSize = fields.get("originalSize", 0L);
+        currentSize = fields.get("currentSize", 0L);
+        state = (State) fields.get("state", null);
+        Object table = fields.get("files", null);
+        files = table instanceof Map? FileTable.of((Map<String, Long>) table) : (FileTable) table;
+        spilled = fields.get("spilled", false);
+        filesOffset = fields.get("filesOffset", 0L);
+        totalFiles = fields.get("totalFiles", 0);
+        filesLength = fields.get("filesLength", 0);
+        originalLength = fields.get("originalLength", 0);
+        modified = fields.get("modified", 0L);
+        device = fields.get("device", FileKeySet.UNKNOWN_DEVICE);
+        inode = fields.get("inode", 0L);
+        allocatedSize = fields.get("allocatedSize", 0L);
+        originalFiles = (FileTable) fields.get("originalFiles", null);
+        originalOffset = fields.get("originalOffset", -1L);
+        addedFiles = fields.get("addedFiles", 0);
+        removedFiles = fields.get("removedFiles", 0);
+        resizedFiles = fields.get("resizedFiles", 0);
+    }
 
     @Override
     public int hashCode() {
-        return 31 + file.hashCode();
+        return 31 + path.hashCode();
     }
 
     @Override
     public final boolean equals(Object obj) {
         if (this == obj) return true;
-        if (obj instanceof Folder) return this.file.equals(((Folder) obj).file); //subclasses will be considered equal if they reference the same file.
+        if (obj instanceof Folder) return this.path.equals(((Folder) obj).path); //subclasses will be considered equal if they reference the same path.
         return false;
     }
     
     @Override
     public int compareTo(Folder other) {
-        return file.compareTo(other.file);
+        return path.compareTo(other.path); //name by name from the root; no file is built.
     }
 
     @Override
     public String toString() {
-        return file.getPath();
+        return path.toString();
     }
 
 }
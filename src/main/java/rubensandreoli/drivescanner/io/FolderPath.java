@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Path of a folder kept as its own name and a reference to its parent's path,
+ * so that folders under the same parent share it instead of repeating it.
+ * <br>Files are built on demand. Paths are equal if their names are, compared
+ * as {@link File} compares paths on the platform, and their parents are.
+ * <br>Paths sort name by name from the root, a folder before its subfolders.
+ */
+public final class FolderPath implements Serializable, Comparable<FolderPath> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final boolean IGNORE_CASE = new File("a").equals(new File("A")); //same equality as File; shared by every class comparing paths.
+
+    //<editor-fold defaultstate="collapsed" desc="INTERNER">
+    /**
+     * Rebuilds paths over shared parents; used for paths that were built on their own.
+     * <br>Not synchronized.
+     */
+    static final class Interner{
+
+        private final Map<FolderPath, FolderPath> paths = new HashMap<>();
+
+        FolderPath intern(FolderPath path){
+            FolderPath interned = paths.get(path);
+            if(interned != null) return interned;
+            FolderPath parent = path.parent == null? null : intern(path.parent);
+            interned = parent == path.parent? path : new FolderPath(parent, path.name);
+            paths.put(interned, interned);
+            return interned;
+        }
+
+    }
+    //</editor-fold>
+
+    private final FolderPath parent; //null if root.
+    private final String name; //whole path if root.
+    private transient int hash; //0 until first needed.
+
+    private FolderPath(FolderPath parent, String name) {
+        this.parent = parent;
+        this.name = name;
+    }
+
+    /**
+     * @param file absolute; each of its ancestors gets a new path.
+     */
+    public static FolderPath of(File file){
+        File parentFile = file.getParentFile();
+        return parentFile == null? new FolderPath(null, file.getPath()) : new FolderPath(of(parentFile), file.getName());
+    }
+
+    FolderPath resolve(String name){
+        return new FolderPath(this, name);
+    }
+
+    /**
+     * @return {@code null} if root.
+     */
+    public FolderPath getParent() {
+        return parent;
+    }
+
+    /**
+     * @return the whole path, if root.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a new file on each call.
+     */
+    public File toFile(){
+        return new File(toString());
+    }
+
+    /**
+     * Folds each character as {@link String#equalsIgnoreCase} does, so names equal
+     * ignoring case fold the same, whatever the default locale.
+     */
+    static String foldCase(String name){
+        StringBuilder folded = new StringBuilder(name.length());
+        name.codePoints().forEach(c -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return folded.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if(h == 0){
+            h = 31 * (parent == null? 1 : parent.hashCode()) + (IGNORE_CASE? foldCase(name) : name).hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof FolderPath)) return false;
+        FolderPath path = this, other = (FolderPath) obj;
+        while(path != other){ //paths under the same parent stop there.
+            if(path == null || other == null || path.hashCode() != other.hashCode()) return false;
+            if(IGNORE_CASE? !path.name.equalsIgnoreCase(other.name) : !path.name.equals(other.name)) return false;
+            path = path.parent;
+            other = other.parent;
+        }
+        return true;
+    }
+
+    /**
+     * Walks both paths up to their common parent, comparing their names on the way;
+     * the topmost names that differ decide. Neither path is built as a string.
+     */
+    @Override
+    public int compareTo(FolderPath other) {
+        FolderPath path = this;
+        int depth = path.getDepth(), otherDepth = other.getDepth();
+        for (int i = depth; i > otherDepth; i--) {
+            path = path.parent;
+        }
+        for (int i = otherDepth; i > depth; i--) {
+            other = other.parent;
+        }
+        int comparison = 0;
+        while(path != other){ //paths under the same parent stop there.
+            int names = IGNORE_CASE? path.name.compareToIgnoreCase(other.name) : path.name.compareTo(other.name);
+            if(names != 0) comparison = names;
+            path = path.parent;
+            other = other.parent;
+        }
+        return comparison != 0? comparison : Integer.compare(depth, otherDepth); //same path up to the shallower one.
+    }
+
+    int getDepth(){
+        int depth = 0;
+        for (FolderPath path = this; path != null; path = path.parent) {
+            depth++;
+        }
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        int depth = getDepth();
+        String[] names = new String[depth];
+        for (FolderPath path = this; path != null; path = path.parent) {
+            names[--depth] = path.name;
+        }
+        StringBuilder builder = new StringBuilder(names[0]);
+        for (int i = 1; i < names.length; i++) {
+            if(builder.length() > 0 && builder.charAt(builder.length()-1) != File.separatorChar) builder.append(File.separatorChar); //roots may end with it.
+            builder.append(names[i]);
+        }
+        return builder.toString();
+    }
+
+}
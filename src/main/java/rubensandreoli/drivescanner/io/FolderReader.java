@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the content of a single folder; each folder is listed exactly once.
+ */
+abstract class FolderReader {
+
+    //<editor-fold defaultstate="collapsed" desc="LISTING">
+    static class Stamp{
+        final long modified;
+        final long device, inode; //device is FileKeySet.UNKNOWN_DEVICE if the reader has no file keys.
+
+        Stamp(long modified, long device, long inode) {
+            this.modified = modified;
+            this.device = device;
+            this.inode = inode;
+        }
+
+        Stamp(long modified) {
+            this(modified, FileKeySet.UNKNOWN_DEVICE, 0L);
+        }
+    }
+    
+    static class Subfolder{
+        final File file;
+        final long device, inode; //of the folder links point to; device is FileKeySet.UNKNOWN_DEVICE if the reader has no file keys.
+
+        Subfolder(File file, long device, long inode) {
+            this.file = file;
+            this.device = device;
+            this.inode = inode;
+        }
+
+        Subfolder(File file) {
+            this(file, FileKeySet.UNKNOWN_DEVICE, 0L);
+        }
+    }
+    
+    static class Listing{
+        final FileTable.Builder builder; //null if files were not requested.
+        FileTable files; //null if files were not requested; built once listed.
+        final List<Subfolder> subfolders = new ArrayList<>();
+        Stamp stamp; //read before the entries; changes made while listing will show on the next update.
+        int entries; //all entries read, including the ones that are neither files nor folders.
+        long allocated; //of the files read; 0 if not counted.
+
+        Listing(boolean withFiles) {
+            builder = withFiles? new FileTable.Builder() : null;
+        }
+        
+        Listing build(){
+            if(builder != null) files = builder.build();
+            return this;
+        }
+    }
+    //</editor-fold>
+    
+    /**
+     * @param withFiles if {@code false} only subfolders are read, sparing the cost of reading file sizes.
+     * @param allocation counts the disk usage of the files read; {@code null} to not count it.
+     * @return {@code null} if the folder could not be listed.
+     */
+    abstract Listing read(File folder, boolean withFiles, AllocationCounter allocation);
+    
+    /**
+     * Reads only the folder's own attributes, without listing it.
+     * 
+     * @return {@code null} if the folder could not be read.
+     */
+    abstract Stamp readStamp(File folder);
+    
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Work-stealing crawler; every subfolder is forked as its own task, so idle
+ * workers steal whole subtrees from busy ones.
+ */
+class ForkJoinCrawler extends Crawler {
+
+    //<editor-fold defaultstate="collapsed" desc="TASK">
+    private static class FolderTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+        
+        private final Folder folder;
+        private final transient Visitor visitor;
+
+        private FolderTask(Folder folder, Visitor visitor) {
+            this.folder = folder;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            List<Folder> subfolders = visitor.visit(folder);
+            if(subfolders.isEmpty()) return;
+            FolderTask[] tasks = new FolderTask[subfolders.size()];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new FolderTask(subfolders.get(i), visitor);
+            }
+            invokeAll(tasks);
+        }
+        
+    }
+    //</editor-fold>
+    
+    //<editor-fold defaultstate="collapsed" desc="RANGE TASK">
+    private static class RangeTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 16; //each folder costs a read, so ranges are kept small to balance well.
+        
+        private final transient Folder[] folders;
+        private final int from, to;
+        private final transient Consumer<Folder> action;
+
+        private RangeTask(Folder[] folders, int from, int to, Consumer<Folder> action) {
+            this.folders = folders;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= THRESHOLD){
+                for (int i = from; i < to; i++) {
+                    action.accept(folders[i]);
+                }
+            }else{
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(folders, from, middle, action), new RangeTask(folders, middle, to, action));
+            }
+        }
+        
+    }
+    //</editor-fold>
+    
+    private final int parallelism;
+
+    ForkJoinCrawler(int parallelism) {
+        this.parallelism = parallelism;
+    }
+    
+    @Override
+    void crawl(Folder root, Visitor visitor) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new FolderTask(root, visitor));
+        }finally{
+            pool.shutdown(); //pool is private to this crawl; threads must not outlive it.
+        }
+    }
+
+    @Override
+    void forEach(Collection<Folder> folders, Consumer<Folder> action) {
+        Folder[] array = folders.toArray(new Folder[folders.size()]);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new RangeTask(array, 0, array.length, action));
+        }finally{
+            pool.shutdown();
+        }
+    }
+    
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Single-threaded crawler driven by an explicit frontier instead of the call
+ * stack; memory is bounded by the folders waiting to be visited, not by depth.
+ */
+class IterativeCrawler extends Crawler {
+
+    private final boolean depthFirst;
+
+    /**
+     * @param depthFirst {@code true} visits folders in the same order as {@link RecursiveCrawler};
+     * {@code false} visits them level by level.
+     */
+    IterativeCrawler(boolean depthFirst) {
+        this.depthFirst = depthFirst;
+    }
+    
+    @Override
+    void crawl(Folder root, Visitor visitor) {
+        Deque<Folder> frontier = new ArrayDeque<>();
+        frontier.add(root);
+        Folder folder;
+        while((folder = frontier.pollFirst()) != null){
+            List<Folder> subfolders = visitor.visit(folder);
+            if(depthFirst){
+                ListIterator<Folder> iterator = subfolders.listIterator(subfolders.size());
+                while(iterator.hasPrevious()){ //pushed backwards so the first subfolder is visited next.
+                    frontier.addFirst(iterator.previous());
+                }
+            }else{
+                frontier.addAll(subfolders);
+            }
+        }
+    }
+    
+}
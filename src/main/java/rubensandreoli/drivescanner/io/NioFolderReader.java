@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code java.nio} reader; type and size of every entry come from a single
+ * attributes read, which on Windows is already cached by the directory listing.
+ * <br>Where the {@code unix} attribute view is supported, the same read also
+ * gives the entry's device and inode numbers, its file key; elsewhere there
+ * are no file keys.
+ */
+class NioFolderReader extends FolderReader {
+
+    private static final Set<FileVisitOption> OPTIONS = EnumSet.of(FileVisitOption.FOLLOW_LINKS); //same as java.io.
+    private static final boolean UNIX = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    private static final String UNIX_ATTRIBUTES = "unix:lastModifiedTime,isDirectory,isRegularFile,size,dev,ino"; //links are followed.
+    
+    @Override
+    Listing read(File folder, boolean withFiles, AllocationCounter allocation) {
+        return UNIX? readUnix(folder, withFiles, allocation) : readBasic(folder, withFiles, allocation);
+    }
+
+    private Listing readUnix(File folder, boolean withFiles, AllocationCounter allocation) {
+        final Path folderPath = folder.toPath();
+        final Listing listing = new Listing(withFiles);
+        try(DirectoryStream<Path> entries = Files.newDirectoryStream(folderPath)){
+            Map<String, Object> attrs = Files.readAttributes(folderPath, UNIX_ATTRIBUTES);
+            if(!(Boolean) attrs.get("isDirectory")) return null;
+            listing.stamp = toStamp(attrs);
+            for (Path file : entries) {
+                listing.entries++;
+                try{
+                    attrs = Files.readAttributes(file, UNIX_ATTRIBUTES);
+                }catch(IOException | SecurityException ex){
+                    continue; //entries that fail are ignored, as java.io does.
+                }
+                long device = (Long) attrs.get("dev"), inode = (Long) attrs.get("ino");
+                if((Boolean) attrs.get("isDirectory")){
+                    listing.subfolders.add(new Subfolder(file.toFile(), device, inode));
+                }else if(withFiles && (Boolean) attrs.get("isRegularFile")){
+                    long size = (Long) attrs.get("size");
+                    listing.builder.add(file.getFileName().toString(), size);
+                    if(allocation != null) listing.allocated += allocation.add(file, size, device, inode);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException | SecurityException ex) {
+            return null;
+        }
+        return listing.build();
+    }
+
+    private Listing readBasic(File folder, boolean withFiles, AllocationCounter allocation) {
+        final Path folderPath = folder.toPath();
+        final Listing listing = new Listing(withFiles);
+        final boolean[] failed = {false};
+        try {
+            Files.walkFileTree(folderPath, OPTIONS, 1, new SimpleFileVisitor<Path>(){ //depth 1 visits subfolders as files, without opening them.
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    listing.stamp = new Stamp(attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if(file.equals(folderPath)){ //not a directory; only directories are pre-visited.
+                        failed[0] = true;
+                        return FileVisitResult.CONTINUE;
+                    }
+                    listing.entries++;
+                    if(attrs.isDirectory()){
+                        listing.subfolders.add(new Subfolder(file.toFile()));
+                    }else if(withFiles && attrs.isRegularFile()){
+                        listing.builder.add(file.getFileName().toString(), attrs.size());
+                        if(allocation != null) listing.allocated += allocation.add(file, attrs.size(), FileKeySet.UNKNOWN_DEVICE, 0L);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    if(file.equals(folderPath)) failed[0] = true; //entries that fail are ignored, as java.io does.
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | SecurityException ex) {
+            return null;
+        }
+        return failed[0]? null : listing.build();
+    }
+
+    @Override
+    Stamp readStamp(File folder) {
+        try {
+            if(UNIX){
+                Map<String, Object> attrs = Files.readAttributes(folder.toPath(), UNIX_ATTRIBUTES);
+                return (Boolean) attrs.get("isDirectory")? toStamp(attrs) : null;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(folder.toPath(), BasicFileAttributes.class);
+            return attrs.isDirectory()? new Stamp(attrs.lastModifiedTime().toMillis()) : null;
+        } catch (IOException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    private static Stamp toStamp(Map<String, Object> attrs){
+        return new Stamp(((FileTime) attrs.get("lastModifiedTime")).toMillis(), (Long) attrs.get("dev"), (Long) attrs.get("ino"));
+    }
+
+}
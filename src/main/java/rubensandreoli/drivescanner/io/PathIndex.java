@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+
+/**
+ * Folders of every scan of a drive, kept as a tree of path names. Each node
+ * counts the scans that contain its folder, and how many nodes of its subtree
+ * are in no scan at all, so a subtree fully covered by previous scans is
+ * found without visiting it.
+ * <br>Not synchronized; it may be read by many threads while it is not being changed.
+ */
+public class PathIndex {
+
+    //<editor-fold defaultstate="collapsed" desc="NODE">
+    static final class Node{
+        
+        private static final Node[] NO_CHILDREN = new Node[0];
+        
+        private final String name;
+        private final Node parent;
+        private Node[] children = NO_CHILDREN; //sorted by name.
+        private int size;
+        private int scans; //scans containing this folder.
+        private int holes; //nodes in this subtree, including this one, in no scan.
+
+        private Node(String name, Node parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+        
+        private int indexOf(String name){
+            int low = 0, high = size - 1;
+            while(low <= high){
+                int middle = (low + high) >>> 1;
+                int comparison = NAME_COMPARATOR.compare(children[middle].name, name);
+                if(comparison < 0) low = middle + 1;
+                else if(comparison > 0) high = middle - 1;
+                else return middle;
+            }
+            return -(low + 1);
+        }
+        
+        private Node getChild(String name){
+            int index = indexOf(name);
+            return index < 0? null : children[index];
+        }
+        
+        private Node addChild(String name){
+            int index = indexOf(name);
+            if(index >= 0) return children[index];
+            index = -(index + 1);
+            if(size == children.length) children = Arrays.copyOf(children, Math.max(2, size * 2));
+            System.arraycopy(children, index, children, index + 1, size - index);
+            Node child = new Node(name, this);
+            children[index] = child;
+            size++;
+            child.addHoles(1); //new nodes are in no scan until counted.
+            return child;
+        }
+        
+        private void removeChild(Node child){
+            int index = indexOf(child.name);
+            System.arraycopy(children, index + 1, children, index, size - index - 1);
+            children[--size] = null;
+            if(size == 0) children = NO_CHILDREN;
+        }
+        
+        private Node copyNode(Node parent){ //children are copied by copy().
+            Node copy = new Node(name, parent);
+            copy.scans = scans;
+            copy.holes = holes;
+            copy.size = size;
+            if(size > 0) copy.children = new Node[size];
+            return copy;
+        }
+        
+        /**
+         * @return deep copy of the subtree, made without recursion so that deep trees do not overflow the stack.
+         */
+        private Node copy(){
+            Node copy = copyNode(null);
+            Deque<Node> originals = new ArrayDeque<>(), copies = new ArrayDeque<>();
+            originals.push(this);
+            copies.push(copy);
+            while(!originals.isEmpty()){
+                Node node = originals.pop(), nodeCopy = copies.pop();
+                for (int i = 0; i < node.size; i++) {
+                    nodeCopy.children[i] = node.children[i].copyNode(nodeCopy);
+                    originals.push(node.children[i]);
+                    copies.push(nodeCopy.children[i]);
+                }
+            }
+            return copy;
+        }
+        
+        private void addHoles(int delta){
+            for (Node node = this; node != null; node = node.parent) {
+                node.holes += delta;
+            }
+        }
+        
+        /**
+         * @return {@code true} if at least one scan contains this folder.
+         */
+        boolean isCovered(){
+            return scans > 0;
+        }
+        
+        /**
+         * @return {@code true} if every folder known in this subtree is in a scan.
+         */
+        boolean isComplete(){
+            return holes == 0;
+        }
+        
+    }
+    //</editor-fold>
+    
+    private static final Comparator<String> NAME_COMPARATOR = FolderPath.IGNORE_CASE? String.CASE_INSENSITIVE_ORDER : Comparator.naturalOrder();
+    
+    private final FolderPath drive;
+    private final int driveDepth;
+    private final Node root;
+    private int total; //distinct folders in at least one scan.
+    
+    PathIndex(File drive){
+        this.drive = FolderPath.of(drive);
+        driveDepth = this.drive.getDepth();
+        root = new Node(drive.getPath(), null);
+        root.holes = 1;
+    }
+    
+    /**
+     * Deep copy, so that folders can be added without changing the original.
+     */
+    PathIndex(PathIndex index){
+        drive = index.drive;
+        driveDepth = index.driveDepth;
+        root = index.root.copy();
+        total = index.total;
+    }
+    
+    void addAll(Collection<Folder> folders){
+        for (Folder folder : folders) {
+            add(folder.getPath());
+        }
+    }
+    
+    void removeAll(Collection<Folder> folders){
+        for (Folder folder : folders) {
+            remove(folder.getPath());
+        }
+    }
+    
+    private void add(FolderPath path){
+        String[] names = getNames(path);
+        if(names == null) return; //not in this drive.
+        Node node = root;
+        for (String name : names) {
+            node = node.addChild(name);
+        }
+        if(node.scans++ == 0){
+            node.addHoles(-1);
+            total++;
+        }
+    }
+    
+    private void remove(FolderPath path){
+        Node node = find(path);
+        if(node == null || node.scans == 0) return;
+        if(--node.scans > 0) return;
+        node.addHoles(1);
+        total--;
+        while(node.parent != null && node.scans == 0 && node.size == 0){ //prune nodes no longer needed.
+            node.addHoles(-1);
+            node.parent.removeChild(node);
+            node = node.parent;
+        }
+    }
+    
+    /**
+     * Walks the names of the path; neither a file nor a path string is built.
+     * 
+     * @return {@code null} if the folder is not indexed.
+     */
+    Node find(FolderPath path){
+        String[] names = getNames(path);
+        if(names == null) return null;
+        Node node = root;
+        for (int i = 0; i < names.length && node != null; i++) {
+            node = node.getChild(names[i]);
+        }
+        return node;
+    }
+    
+    /**
+     * @return names below the drive, from the topmost; {@code null} if not in the drive.
+     */
+    private String[] getNames(FolderPath path){
+        int depth = path.getDepth() - driveDepth;
+        if(depth < 0) return null;
+        String[] names = new String[depth];
+        for (int i = depth - 1; i >= 0; i--) {
+            names[i] = path.getName();
+            path = path.getParent();
+        }
+        return path.equals(drive)? names : null;
+    }
+
+    public boolean contains(File folder){
+        Node node = find(FolderPath.of(folder));
+        return node != null && node.isCovered();
+    }
+    
+    /**
+     * Folders created after the scans were made are not known, so a complete
+     * subtree may still be missing folders.
+     * 
+     * @return {@code true} if the folder and every indexed folder below it are in a scan.
+     */
+    public boolean isComplete(File folder){
+        Node node = find(FolderPath.of(folder));
+        return node != null && node.isComplete();
+    }
+    
+    /**
+     * @return distinct folders in at least one scan.
+     */
+    public int size(){
+        return total;
+    }
+    
+    public boolean isEmpty(){
+        return total == 0;
+    }
+    
+}
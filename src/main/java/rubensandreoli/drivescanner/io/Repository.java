@@ -40,6 +40,7 @@ public class Repository { //not synchronized.
 
         private static final Comparator<Scan> DATE_COMPARATOR = (s1, s2) -> s1.getDate().compareTo(s2.getDate());
         private final Map<File, Collection<Scan>> scans = new HashMap<>();
+        private final Map<File, PathIndex> indexes = new HashMap<>(); //folders of all scans of each drive.
         
         private Data(){}
 
@@ -50,12 +51,17 @@ public class Repository { //not synchronized.
             File key = scan.getDrive();
             if(!scans.containsKey(key)){
                 scans.put(key, new TreeSet<>(DATE_COMPARATOR));
+                indexes.put(key, new PathIndex(key));
+            }
+            if(scans.get(key).add(scan)){
+                indexes.get(key).addAll(scan.getFolders());
             }
-            scans.get(key).add(scan);
         }
         
         void deleteScan(Scan scan) {
-            scans.get(scan.getDrive()).remove(scan);
+            if(scans.get(scan.getDrive()).remove(scan)){
+                indexes.get(scan.getDrive()).removeAll(scan.getFolders());
+            }
         }
         
         void replaceScan(Scan oldScan, Scan newScan){
@@ -70,15 +76,19 @@ public class Repository { //not synchronized.
             return Collections.unmodifiableCollection(scans.get(drive));
         }
 
-        public Set<Folder> getDriveFolders(File drive){ 
-            if(!scans.containsKey(drive)){
-                return Collections.EMPTY_SET;
-            }
-            Set<Folder> value = new HashSet<>(); //used for reference when performing a new scan; return is only read and must be fast for contains.
-            for (Scan scan : scans.get(drive)) {
-                value.addAll(scan.getFolders());
-            }
-            return value;
+        /**
+         * @return index kept up to date as scans are changed; used for reference when performing a new scan.
+         */
+        public PathIndex getDriveIndex(File drive){ 
+            PathIndex index = indexes.get(drive);
+            return index != null? index : new PathIndex(drive);
+        }
+        
+        /**
+         * @return drives with at least one scan.
+         */
+        public Set<File> getDrives(){
+            return Collections.unmodifiableSet(scans.keySet());
         }
         
         public boolean isDriveEmpty(File drive){
@@ -126,11 +136,15 @@ public class Repository { //not synchronized.
 
     public static final String FOLDER_NAME = "history";
     public static final String FILE_EXTENSION = ".scan";
+    public static final String CHECKPOINT_EXTENSION = ".checkpoint";
+    private static final long ORPHAN_AGE = 60 * 60 * 1000L; //sidecars without a scan file, younger than this, may be being saved by another process.
     
     
     private static final Repository INSTANCE = new Repository();
     private final File folder;
     private final Data data = new Data();
+    private boolean mapFiles;
+    private boolean spillFiles;
 
     private Repository() {
         folder = new File(System.getProperty("user.dir"), FOLDER_NAME);
@@ -143,13 +157,49 @@ public class Repository { //not synchronized.
         return INSTANCE;
     }
     
+    /**
+     * Must be set before loading.
+     * 
+     * @param mapFiles if sidecars of loaded scans are memory mapped, so that their
+     * folders' files are read in place, off the heap. On Windows, scans that were
+     * loaded cannot have their sidecars deleted or replaced until the mappings are
+     * collected, which may be only on exit; those left are deleted on the next load.
+     */
+    public void setMapFiles(boolean mapFiles) {
+        this.mapFiles = mapFiles;
+    }
+    
+    /**
+     * Must be set before loading.
+     * 
+     * @param spillFiles if every scan is saved with its folders' files in the sidecar,
+     * so that only folders are read when loading and files only when needed. Scans
+     * loaded with their files in the scan file are moved to the sidecar only when
+     * saved again, as they are changed; loading never rewrites them.
+     */
+    public void setSpillFiles(boolean spillFiles) {
+        this.spillFiles = spillFiles;
+    }
+    
+    /**
+     * @param bytes of files read from sidecars that are kept in memory, for all
+     * scans; 0 to read them every time. Files of mapped sidecars are not kept.
+     */
+    public void setCacheSize(long bytes){
+        RunFile.setCacheSize(bytes);
+    }
+    
     public Data load(LoadListener listener) {
+        RunFile.deleteTemporary(folder); //left by scans that were never saved.
         for (File scanFile : folder.listFiles()) {
             final String filename = scanFile.getName();
             if (scanFile.isFile() && filename.endsWith(FILE_EXTENSION)) {
                 listener.onLoading(filename);
                 try (var ois = new ObjectInputStream(new FileInputStream(scanFile))) {
-                    data.addScan((Scan) ois.readObject()); 
+                    Scan scan = (Scan) ois.readObject();
+                    File sidecar = createRunFile(scan.getFilename());
+                    if(sidecar.isFile()) scan.attach(new RunFile(sidecar, mapFiles));
+                    data.addScan(scan); 
                 } catch (FileNotFoundException ex) {
                     listener.onLoadError(new ExceptionMessage(scanFile.getName(), ex));
                 } catch (InvalidClassException ex){
@@ -157,6 +207,10 @@ public class Repository { //not synchronized.
                 }catch (IOException | ClassNotFoundException ex) {
                     listener.onLoadError(new ExceptionMessage(scanFile.getName(), ex));
                 }
+            }else if(scanFile.isFile() && filename.endsWith(RunFile.EXTENSION)
+                    && !createScanFile(filename.substring(0, filename.length()-RunFile.EXTENSION.length())).isFile()
+                    && System.currentTimeMillis() - scanFile.lastModified() > ORPHAN_AGE){
+                scanFile.delete(); //of a deleted scan, left if it was mapped.
             }
         }
         listener.onLoaded(data);
@@ -172,6 +226,12 @@ public class Repository { //not synchronized.
     }
     
     private boolean saveScan(Scan scan, WorkListener listener) {
+        try {
+            if(scan.isSpilled() || (spillFiles && scan.hasFilesInMemory())) scan.spillTo(createRunFile(scan.getFilename())); //before the scan, so that it is saved with the new offsets.
+        } catch (IOException ex) {
+            listener.onError(new ExceptionMessage(scan.getName(), ex));
+            return false;
+        }
         try (var oos = new ObjectOutputStream(new FileOutputStream(createScanFile(scan.getFilename())))) {
             oos.writeObject(scan);
             listener.onDone(scan);
@@ -184,6 +244,14 @@ public class Repository { //not synchronized.
         return false;
     }
     
+    /**
+     * @return checkpoint of the last unfinished scan of the drive, if any; see {@link Scanner#setCheckpoint}.
+     */
+    public Checkpoint getCheckpoint(File drive){
+        String name = drive.getPath().replaceAll(Scan.NORMALIZATION_REGEX, "").toLowerCase();
+        return new Checkpoint(new File(folder, (name.isEmpty()? "root" : name)+CHECKPOINT_EXTENSION), Checkpoint.DEFAULT_INTERVAL);
+    }
+    
     public boolean deleteScan(Scan scan){ //TODO: change behaviour to remove from memory even if failed to delete, just show warning.
         return deleteScan(scan, null);
     }
@@ -191,6 +259,7 @@ public class Repository { //not synchronized.
     private boolean deleteScan(Scan scan, Boolean remove){ //a null 'remove' will remove data from memory only if succeeded.
         File scanFile = createScanFile(scan.getFilename());
         boolean succeeded = (scanFile.isFile() && scanFile.delete());
+        if(succeeded) createRunFile(scan.getFilename()).delete(); //not by the scan's run file; it may have been moved to a renamed scan.
         if((remove == null && succeeded) || (remove != null && remove)){
             data.deleteScan(scan);
         }
@@ -262,7 +331,7 @@ public class Repository { //not synchronized.
         }
         
         deleteScans(scans, true);
-        data.addScan(mergedScan);
+        data.replaceScan(into, mergedScan); //same date; adding it would be refused while 'into' is still there.
         
         listener.onDone(mergedScan);
         return mergedScan;
@@ -307,6 +376,21 @@ public class Repository { //not synchronized.
         return new File(folder, scanFilename+FILE_EXTENSION);
     }
 
+    /**
+     * @param scanFilename without extension.
+     * @return sidecar with the files of the scan's folders, if spilled.
+     */
+    private File createRunFile(String scanFilename){
+        return new File(folder, scanFilename+RunFile.EXTENSION);
+    }
+
+    /**
+     * @return where scans are saved; also used for their temporary files.
+     */
+    public File getFolder() {
+        return folder;
+    }
+
     public boolean existsScan(File drive, String name){
         return createScanFile(Scan.createFilename(drive, name)).isFile();
     }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+/**
+ * Totals of a folder and every folder of the same scan under it; see {@link Scan#getRollup}.
+ */
+public class Rollup {
+
+    static final Rollup EMPTY = new Rollup(0L, 0L, 0L);
+
+    private final long size, files, folders;
+
+    Rollup(long size, long files, long folders) {
+        this.size = size;
+        this.files = files;
+        this.folders = folders;
+    }
+
+    /**
+     * @return current size, in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return folders of the scan in the subtree, the folder itself included if it is in the scan.
+     */
+    public long getFolders() {
+        return folders;
+    }
+
+    @Override
+    public String toString() {
+        return size+" bytes, "+files+" files, "+folders+" folders";
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recursive totals of every folder of a scan, and of every folder above them up
+ * to the drive. Each change to a folder is added to the folder and to each of
+ * its ancestors, walked up by their shared parent paths, so totals are kept
+ * without ever walking a subtree; entries left with no folders are dropped.
+ * <br>Not saved with the scan; rebuilt from its folders when loaded.
+ * <br>Thread-safe, so it can be filled by the threads of a scan.
+ */
+class Rollups {
+
+    private static final int SIZE = 0, FILES = 1, FOLDERS = 2;
+
+    private final FolderPath drive;
+    private final Map<FolderPath, long[]> totals = new ConcurrentHashMap<>();
+
+    Rollups(File drive) {
+        this.drive = FolderPath.of(drive);
+    }
+
+    Rollups(File drive, Collection<Folder> folders) {
+        this(drive);
+        for (Folder folder : folders) {
+            add(folder);
+        }
+    }
+
+    /**
+     * Deep copy, so that changing one does not change the other.
+     */
+    Rollups(Rollups rollups) {
+        drive = rollups.drive;
+        for (Map.Entry<FolderPath, long[]> entry : rollups.totals.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue().clone());
+        }
+    }
+
+    void add(Folder folder){
+        add(folder.getPath(), folder.getCurrentSize(), folder.getTotalFiles(), 1);
+    }
+
+    void remove(Folder folder){
+        add(folder.getPath(), -folder.getCurrentSize(), -folder.getTotalFiles(), -1);
+    }
+
+    /**
+     * Must be called after a folder of the scan changed its files.
+     */
+    void change(Folder folder, long oldSize, int oldFiles){
+        add(folder.getPath(), folder.getCurrentSize() - oldSize, folder.getTotalFiles() - oldFiles, 0);
+    }
+
+    private void add(FolderPath folder, long size, long files, long folders){
+        for (FolderPath ancestor = folder; ancestor != null; ancestor = ancestor.getParent()) {
+            totals.compute(ancestor, (f, total) -> {
+                if(total == null) total = new long[3];
+                total[SIZE] += size;
+                total[FILES] += files;
+                total[FOLDERS] += folders;
+                return total[FOLDERS] == 0? null : total;
+            });
+            if(ancestor.equals(drive)) break;
+        }
+    }
+
+    Rollup get(FolderPath folder){
+        Rollup[] rollup = {Rollup.EMPTY};
+        totals.computeIfPresent(folder, (f, total) -> { //read while no thread is adding to it.
+            rollup[0] = new Rollup(total[SIZE], total[FILES], total[FOLDERS]);
+            return total;
+        });
+        return rollup[0];
+    }
+
+}
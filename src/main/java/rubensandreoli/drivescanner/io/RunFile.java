@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append only file of folders' file tables, so that they do not have to be
+ * kept in memory; each table is read back by the offset it was written at.
+ * <br>Scans keep their tables in a sidecar run file next to the scan file.
+ * Tables replaced by updates are not removed from it.
+ * <br>Sidecars may be memory mapped, so that tables are read in place, off the
+ * heap, and paged in and out by the system as needed; on Windows a mapped file
+ * cannot be deleted or replaced until it is unmapped, which only happens when
+ * the mapping is collected. Tables read from files that are not mapped are
+ * cached, up to a number of bytes shared by all run files.
+ * <br>Synchronized, so it can be shared between the threads of a scan.
+ */
+class RunFile {
+
+    //<editor-fold defaultstate="collapsed" desc="CACHE">
+    private static final class Key{
+        final RunFile run;
+        final long offset;
+
+        Key(RunFile run, long offset) {
+            this.run = run;
+            this.offset = offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(run) + Long.hashCode(offset);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return run == other.run && offset == other.offset;
+        }
+    }
+
+    /**
+     * Least recently read tables; tables are never changed once written, so entries are never stale.
+     */
+    private static final class Cache extends LinkedHashMap<Key, FileTable>{
+
+        private static final long serialVersionUID = 1L;
+
+        private long capacity; //in bytes.
+        private long length;
+
+        Cache(long capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        synchronized FileTable get(RunFile run, long offset){
+            return get(new Key(run, offset));
+        }
+
+        synchronized void put(RunFile run, long offset, FileTable table){
+            if(table.getLength() > capacity) return;
+            if(put(new Key(run, offset), table) == null) length += table.getLength();
+            evict();
+        }
+
+        synchronized void setCapacity(long capacity){
+            this.capacity = capacity;
+            evict();
+        }
+
+        private void evict(){
+            for (Iterator<FileTable> tables = values().iterator(); length > capacity && tables.hasNext();) {
+                length -= tables.next().getLength();
+                tables.remove();
+            }
+        }
+    }
+    //</editor-fold>
+
+    static final String EXTENSION = ".files";
+    static final String TEMPORARY_EXTENSION = ".run"; //of scans not yet saved.
+    private static final String TEMPORARY_FOLDER_PREFIX = "run-"; //followed by the id of the process the temporary files are of.
+
+    private static final long REGION_STEP = 1L << 29; //regions overlap, so that tables up to a step long always fit one.
+    private static final int REGION_SIZE = 1 << 30;
+    static final long DEFAULT_CACHE_SIZE = 32L << 20;
+    private static final Cache CACHE = new Cache(DEFAULT_CACHE_SIZE);
+
+    private File file;
+    private boolean temporary;
+    private final boolean mapped;
+    private final Map<Long, MappedByteBuffer> regions = new HashMap<>(); //by index; empty if not mapped.
+    private DataOutputStream out; //null if not appending.
+    private long length;
+
+    private RunFile(File file, boolean temporary, boolean mapped) {
+        this.file = file;
+        this.temporary = temporary;
+        this.mapped = mapped;
+        length = file.length();
+    }
+
+    /**
+     * @param mapped if tables are read from a memory mapping of the file.
+     */
+    RunFile(File file, boolean mapped){
+        this(file, false, mapped);
+    }
+
+    /**
+     * @param folder where the file is created, in a subfolder of this process; it
+     * is deleted on exit, if not moved before.
+     */
+    static RunFile createTemporary(File folder) throws IOException{
+        File processFolder = new File(folder, TEMPORARY_FOLDER_PREFIX+ProcessHandle.current().pid());
+        if(processFolder.mkdir()) processFolder.deleteOnExit(); //registered before its files, so deleted after them.
+        File file = File.createTempFile("scan", TEMPORARY_EXTENSION, processFolder);
+        file.deleteOnExit();
+        return new RunFile(file, true, false);
+    }
+
+    /**
+     * Deletes the temporary files left in the folder by processes that are no
+     * longer running; those of running processes may still be in use.
+     */
+    static void deleteTemporary(File folder){
+        File[] processFolders = folder.listFiles((dir, name) -> name.startsWith(TEMPORARY_FOLDER_PREFIX));
+        if(processFolders == null) return;
+        for (File processFolder : processFolders) {
+            try{
+                long pid = Long.parseLong(processFolder.getName().substring(TEMPORARY_FOLDER_PREFIX.length()));
+                if(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) continue;
+            }catch(NumberFormatException ex){
+                continue; //not a folder of temporary files.
+            }
+            File[] files = processFolder.listFiles();
+            if(files != null){
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            processFolder.delete();
+        }
+    }
+
+    /**
+     * @return offset of the table, to read it back.
+     */
+    synchronized long append(FileTable files) throws IOException{
+        ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES + files.getLength());
+        bytes.putInt(files.getLength());
+        files.writeTo(bytes);
+        if(out == null) out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        long offset = length;
+        out.write(bytes.array());
+        length += bytes.capacity();
+        return offset;
+    }
+
+    /**
+     * @return bytes the table takes once appended.
+     */
+    static int getEntryLength(FileTable files){
+        return Integer.BYTES + files.getLength();
+    }
+
+    FileTable read(long offset) throws IOException{
+        synchronized(this){
+            if(out != null) out.flush(); //the table may still be buffered.
+            if(mapped && !temporary){
+                FileTable table = readMapped(offset);
+                if(table != null) return table;
+            }
+        }
+        FileTable table = CACHE.get(this, offset);
+        if(table == null){
+            table = readFile(offset);
+            CACHE.put(this, offset, table);
+        }
+        return table;
+    }
+
+    private FileTable readFile(long offset) throws IOException{
+        try(var channel = FileChannel.open(getFile().toPath(), StandardOpenOption.READ)){
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset))));
+            byte[] packed = new byte[in.readInt()];
+            in.readFully(packed);
+            return FileTable.wrap(ByteBuffer.wrap(packed));
+        }
+    }
+
+    /**
+     * @return view of the table in the mapping; {@code null} if it does not fit a
+     * region, to be read from the file.
+     */
+    private FileTable readMapped(long offset) throws IOException{
+        ByteBuffer header = map(offset, Integer.BYTES); //length of the table.
+        if(header == null) return null;
+        ByteBuffer table = map(offset + Integer.BYTES, header.getInt(header.position()));
+        return table == null? null : FileTable.wrap(table);
+    }
+
+    /**
+     * Maps the region the bytes start at, again if the file grew past its mapping.
+     *
+     * @return the bytes between its position and limit; {@code null} if they do not fit the region.
+     */
+    private ByteBuffer map(long offset, int count) throws IOException{
+        long index = offset / REGION_STEP;
+        long start = index * REGION_STEP;
+        long end = offset + count;
+        if(end - start > REGION_SIZE || end > length) return null;
+        MappedByteBuffer region = regions.get(index);
+        if(region == null || start + region.capacity() < end){
+            try(var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+                region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, length - start)); //stays valid once the channel is closed.
+            }
+            regions.put(index, region);
+        }
+        return region.duplicate().limit((int) (end - start)).position((int) (offset - start));
+    }
+
+    /**
+     * Flushes appended tables; appending again reopens the file.
+     */
+    synchronized void close() throws IOException{
+        if(out == null) return;
+        try{
+            out.close();
+        }finally{
+            out = null;
+        }
+    }
+
+    /**
+     * Turns a temporary file into a scan's sidecar; offsets are kept.
+     */
+    synchronized void moveTo(File target) throws IOException{
+        close();
+        Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        file = target;
+        temporary = false;
+    }
+
+    synchronized long getLength() {
+        return length;
+    }
+
+    synchronized File getFile() {
+        return file;
+    }
+
+    synchronized boolean isTemporary() {
+        return temporary;
+    }
+
+    boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * @param bytes of tables cached for all run files; 0 to disable it.
+     */
+    static void setCacheSize(long bytes){
+        CACHE.setCapacity(bytes);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Chooses the folders crawled by an estimate, and extrapolates their totals.
+ * <br>Folders down to the full depth are all crawled; below it each subfolder is
+ * crawled with the given probability, but at least one subfolder of each folder
+ * is, so that no subtree is left without a sample. Each folder stands for the
+ * inverse of its probability of being crawled (Horvitz-Thompson). Variances take
+ * inclusions as independent, which they are not for nested folders, so margins
+ * are indicative.
+ * <br>Thread-safe, so it can be shared between the threads of a scan.
+ */
+class Sampling {
+
+    //<editor-fold defaultstate="collapsed" desc="TOTALS">
+    private static final class Totals{
+        final DoubleAdder size = new DoubleAdder(), sizeVariance = new DoubleAdder();
+        final DoubleAdder files = new DoubleAdder(), filesVariance = new DoubleAdder();
+    }
+    //</editor-fold>
+
+    private static final double Z = 1.96; //95% confidence.
+
+    private final int rootDepth, fullDepth;
+    private final double fraction;
+    private final Map<File, Totals> totals = new ConcurrentHashMap<>(); //of each folder down to the full depth.
+    private final Map<File, Double> weights = new ConcurrentHashMap<>(); //of sampled folders not yet crawled; 1 if absent.
+
+    /**
+     * @param fullDepth levels below the drive that are completely crawled.
+     * @param fraction of the subfolders crawled below the full depth; between 0 and 1.
+     */
+    Sampling(File drive, int fullDepth, double fraction) {
+        if(fullDepth < 0) throw new IllegalArgumentException("fullDepth cannot be negative");
+        if(!(fraction > 0 && fraction <= 1)) throw new IllegalArgumentException("fraction must be greater than 0 and at most 1");
+        this.rootDepth = drive.toPath().getNameCount();
+        this.fullDepth = fullDepth;
+        this.fraction = fraction;
+    }
+
+    private int getDepth(File folder){
+        return folder.toPath().getNameCount() - rootDepth;
+    }
+
+    /**
+     * Must be called after the folder is {@link #add added}.
+     * 
+     * @return subfolders to be crawled.
+     */
+    List<Folder> sample(File folder, List<Folder> subfolders){
+        Double folderWeight = weights.remove(folder); //no longer needed once its subfolders have theirs.
+        if(subfolders.isEmpty() || getDepth(folder) < fullDepth) return subfolders;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Folder> sampled = new ArrayList<>();
+        for (Folder subfolder : subfolders) {
+            if(random.nextDouble() < fraction) sampled.add(subfolder);
+        }
+        int total = subfolders.size();
+        if(sampled.isEmpty()) sampled.add(subfolders.get(random.nextInt(total)));
+        double probability = fraction + Math.pow(1 - fraction, total) / total; //drawn, or the one taken when none was.
+        double weight = (folderWeight == null? 1.0 : folderWeight) / probability;
+        for (Folder subfolder : sampled) {
+            weights.put(subfolder.getFile(), weight);
+        }
+        return sampled;
+    }
+
+    /**
+     * Adds a crawled folder's own files to the totals of the folders it is under.
+     */
+    void add(File folder, FileTable files){
+        int depth = getDepth(folder);
+        Double sampledWeight = weights.get(folder);
+        double weight = sampledWeight == null? 1.0 : sampledWeight;
+        double size = files.getTotalSize();
+        double variance = weight * weight - weight; //(1-p)/p^2, p being the probability of being crawled.
+        for (File ancestor = folder; ancestor != null && depth >= 0; ancestor = ancestor.getParentFile(), depth--) {
+            if(depth > fullDepth) continue;
+            Totals folderTotals = totals.computeIfAbsent(ancestor, f -> new Totals());
+            folderTotals.size.add(weight * size);
+            folderTotals.sizeVariance.add(variance * size * size);
+            folderTotals.files.add(weight * files.size());
+            folderTotals.filesVariance.add(variance * files.size() * files.size());
+        }
+    }
+
+    Map<File, Estimate> getEstimates(){
+        Map<File, Estimate> estimates = new HashMap<>();
+        for (Map.Entry<File, Totals> entry : totals.entrySet()) {
+            Totals folderTotals = entry.getValue();
+            estimates.put(entry.getKey(), new Estimate(
+                    Math.round(folderTotals.size.sum()), Math.round(Z * Math.sqrt(folderTotals.sizeVariance.sum())),
+                    Math.round(folderTotals.files.sum()), Math.round(Z * Math.sqrt(folderTotals.filesVariance.sum()))));
+        }
+        return estimates;
+    }
+
+}
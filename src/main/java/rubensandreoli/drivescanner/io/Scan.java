@@ -17,17 +17,22 @@
 package rubensandreoli.drivescanner.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class Scan implements Serializable{
     private static final long serialVersionUID = 1L;
 
     private static final String FILENAME_DIVISOR = "-";
-    private static final String NORMALIZATION_REGEX = "[<>:\"\\\\/|?*]";
+    static final String NORMALIZATION_REGEX = "[<>:\"\\\\/|?*]";
 
     private final String name, filename;
     private final File drive;
@@ -38,9 +43,22 @@ public class Scan implements Serializable{
     
     private Date updatedDate;
     private long updatedSize;
+    
+    private transient RunFile run; //of spilled folders; null if none.
+    private Map<File, Estimate> estimates; //null if not estimated.
+    private transient Rollups rollups; //rebuilt when loaded.
 
     public Scan(String name, File drive, Set<Folder> folders) {
         this(name, drive, folders, new Date(), calculateSize(folders));
+        rollups = new Rollups(drive, folders);
+    }
+    
+    /**
+     * @param rollups totals of the folders, already added up while crawling.
+     */
+    Scan(String name, File drive, Set<Folder> folders, Rollups rollups) {
+        this(name, drive, folders, new Date(), calculateSize(folders));
+        this.rollups = rollups;
     }
     
     private Scan(String name, File drive, Set<Folder> folders, Date date, long size){
@@ -62,7 +80,9 @@ public class Scan implements Serializable{
     
     static String createFilename(File drive, String name){
         String rootPath = drive.getPath(); 
-        String rootLetter = rootPath.substring(0, rootPath.length()-2).toLowerCase();
+        String rootLetter = rootPath.endsWith(":\\")? rootPath.substring(0, rootPath.length()-2).toLowerCase() : 
+                rootPath.replaceAll(NORMALIZATION_REGEX, "").toLowerCase(); //other drives, as mount points, by their whole path.
+        if(rootLetter.isEmpty()) rootLetter = "root";
         String normalizedName = name.replaceAll(NORMALIZATION_REGEX, "").toLowerCase(); 
         return rootLetter+FILENAME_DIVISOR+normalizedName;
     }
@@ -76,9 +96,122 @@ public class Scan implements Serializable{
         updatedSize = calculateSize(folders);
     }
     
+    /**
+     * @param run where the scan's folders were spilled.
+     */
+    void attach(RunFile run){
+        this.run = run;
+        for (Folder folder : folders) {
+            folder.attach(run);
+        }
+    }
+    
+    /**
+     * @return {@code true} if files of any folder are kept in a run file.
+     */
+    boolean isSpilled(){
+        if(run != null) return true;
+        for (Folder folder : folders) {
+            if(folder.isSpilled()) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * @return {@code true} if files of any folder are kept in memory.
+     */
+    boolean hasFilesInMemory(){
+        for (Folder folder : folders) {
+            if(!folder.isSpilled() && folder.getTotalFiles() > 0) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Moves the files of every folder to the sidecar, from memory or from the
+     * run files of other scans, one folder at a time. Once tables replaced by
+     * updates take more of the sidecar than the folders' own, the folders are
+     * written to a new sidecar that replaces it.
+     */
+    void spillTo(File sidecar) throws IOException{
+        RunFile target;
+        if(run != null && run.isTemporary()){
+            run.moveTo(sidecar); //new scan; its tables are already written.
+            target = run;
+        }else if(run != null && run.getFile().equals(sidecar)){
+            target = run;
+        }else{
+            target = new RunFile(sidecar, run != null && run.isMapped());
+        }
+        try{
+            for (Folder folder : folders) {
+                folder.spill(target);
+            }
+        }finally{
+            target.close();
+        }
+        run = target;
+        long live = 0L;
+        for (Folder folder : folders) {
+            live += folder.getSpilledLength();
+        }
+        if(target.getLength() - live > live) compact(target);
+    }
+    
+    /**
+     * If the sidecar cannot be replaced, as mapped files on Windows, the folders
+     * are left in it, written again.
+     */
+    private void compact(RunFile target) throws IOException{
+        RunFile compacted = RunFile.createTemporary(target.getFile().getParentFile());
+        try{
+            for (Folder folder : folders) {
+                folder.spill(compacted);
+            }
+            compacted.moveTo(target.getFile());
+            run = compacted;
+        }catch(IOException ex){
+            try{
+                for (Folder folder : folders) {
+                    folder.spill(target); //read from either file, as moved so far.
+                }
+            }finally{
+                target.close();
+                compacted.close();
+                compacted.getFile().delete();
+            }
+        }
+    }
+    
+    /**
+     * @param estimates {@code null} if the scan is exact.
+     */
+    void setEstimates(Map<File, Estimate> estimates) {
+        this.estimates = estimates == null? null : new HashMap<>(estimates);
+    }
+    
+    /**
+     * Changes the files of one of the scan's folders, and the totals of the folders above it.
+     * 
+     * @param files {@code null} if the folder was deleted.
+     */
+    void setFiles(Folder folder, FileTable files){
+        long oldSize = folder.getCurrentSize();
+        int oldFiles = folder.getTotalFiles();
+        folder.setFiles(files);
+        rollups.change(folder, oldSize, oldFiles);
+    }
+    
     void merge(Collection<Scan> scans){
         for (Scan s : scans) {
-            if(folders.addAll(s.getFolders())){
+            boolean added = false;
+            for (Folder folder : s.getFolders()) {
+                if(folders.add(folder)){
+                    rollups.add(folder);
+                    added = true;
+                }
+            }
+            if(added){
                 size += s.size;
             }
         }
@@ -89,6 +222,7 @@ public class Scan implements Serializable{
     void addFolders(Set<Folder> folders){
         for (Folder folder : folders) {
             if(this.folders.add(folder)){
+                rollups.add(folder);
                 size += folder.getOriginalSize();
             }
         }
@@ -99,6 +233,7 @@ public class Scan implements Serializable{
     void removeFolders(Set<Folder> folders){
         for (Folder folder : folders) {
             if(this.folders.remove(folder)){
+                rollups.remove(folder);
                 if(isUpdated()){
                     updatedSize -= folder.getCurrentSize();
                 }
@@ -135,6 +270,58 @@ public class Scan implements Serializable{
         return updatedSize;
     }
 
+    /**
+     * @return space the current files take on disk; 0 if not counted when scanning.
+     * The size and updated size are the apparent sizes.
+     */
+    public long getAllocatedSize(){
+        long total = 0L;
+        for (Folder folder : folders) {
+            total += folder.getAllocatedSize();
+        }
+        return total;
+    }
+
+    /**
+     * @return {@code true} if only a sample of the drive's folders was crawled;
+     * see {@link Scanner#estimate}.
+     */
+    public boolean isEstimated(){
+        return estimates != null;
+    }
+    
+    /**
+     * @return extrapolated totals of the drive; {@code null} if not estimated.
+     */
+    public Estimate getEstimate(){
+        return estimates == null? null : estimates.get(drive);
+    }
+    
+    /**
+     * @return extrapolated totals of each completely crawled folder, the drive
+     * included; empty if not estimated.
+     */
+    public Map<File, Estimate> getEstimates(){
+        return estimates == null? Collections.emptyMap() : Collections.unmodifiableMap(estimates);
+    }
+
+    /**
+     * @param folder the drive, a folder of the scan, or any folder above one.
+     * @return current totals of the folder and every folder of the scan under it;
+     * empty if no folder of the scan is under it.
+     */
+    public Rollup getRollup(File folder){
+        return getRollup(FolderPath.of(folder));
+    }
+    
+    /**
+     * @param folder the drive, a folder of the scan, or any folder above one.
+     * @return as {@link #getRollup(File)}; the path is not parsed.
+     */
+    public Rollup getRollup(FolderPath folder){
+        return rollups.get(folder);
+    }
+    
     public boolean isEmpty(){
         return folders.isEmpty();
     }
@@ -161,6 +348,9 @@ public class Scan implements Serializable{
     
     Scan getRenamed(String newName){ //shallow copy.
         Scan copy = new Scan(newName, drive, folders, date, size);
+        copy.run = run;
+        copy.estimates = estimates;
+        copy.rollups = rollups;
 //        if(isUpdated()){
             copy.updatedDate = updatedDate;
             copy.updatedSize = updatedSize;
@@ -172,6 +362,9 @@ public class Scan implements Serializable{
         Set<Folder> foldersCopy = getNewFolderSet();
         foldersCopy.addAll(folders);
         Scan copy = new Scan(name, drive, foldersCopy, date, size);
+        copy.run = run;
+        copy.estimates = estimates;
+        copy.rollups = new Rollups(rollups);
 //        if(isUpdated()){
             copy.updatedDate = updatedDate;
             copy.updatedSize = updatedSize;
@@ -179,6 +372,18 @@ public class Scan implements Serializable{
         return copy;
     }
 
+    /**
+     * Folders of scans saved before folder paths do not share their parents.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        FolderPath.Interner interner = new FolderPath.Interner();
+        for (Folder folder : folders) {
+            folder.intern(interner); //the same path, so the set is not disturbed.
+        }
+        rollups = new Rollups(drive, folders); //added up from the folders' totals; spilled files are not read.
+    }
+
     @Override
     public int hashCode() {
         return 31*(31*drive.hashCode()) + name.hashCode();
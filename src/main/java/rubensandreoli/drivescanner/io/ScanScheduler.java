@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Scans several roots at once, one {@link Scan} per root.
+ * <br>Roots are grouped by {@link java.nio.file.FileStore}; each group is scanned
+ * by at most {@code maxPerDevice} scanners at a time, so independent disks are
+ * crawled in parallel while the roots of a single disk wait for each other.
+ */
+public class ScanScheduler {
+
+    //<editor-fold defaultstate="collapsed" desc="HANDLER">
+    public static interface Handler{
+        /**
+         * Invoked from the scanning threads; see {@link Scanner.Handler#setProgress}.
+         */
+        void setProgress(File root, Scanner.Progress progress);
+        boolean isInterrupted();
+    }
+    //</editor-fold>
+
+    private final int maxPerDevice;
+    private final Function<Scanner.Handler, Scanner> scanners;
+
+    /**
+     * @param maxPerDevice roots of the same file store scanned at the same time.
+     * @param scanners creates and configures the scanner of each root.
+     */
+    public ScanScheduler(int maxPerDevice, Function<Scanner.Handler, Scanner> scanners) {
+        if(maxPerDevice < 1) throw new IllegalArgumentException("maxPerDevice must be positive");
+        this.maxPerDevice = maxPerDevice;
+        this.scanners = scanners;
+    }
+
+    /**
+     * @param indexes folders of previous scans of each root; see {@link Scanner#scan}.
+     * @return scans in the order of the roots; roots not started before an
+     * interruption are left out.
+     */
+    public Map<File, Scan> scan(String name, Collection<File> roots, Function<File, PathIndex> indexes, Handler handler){
+        Map<Object, Queue<File>> devices = new LinkedHashMap<>();
+        for (File root : roots) {
+            devices.computeIfAbsent(getDevice(root), d -> new ConcurrentLinkedQueue<>()).add(root);
+        }
+
+        List<Runnable> workers = new ArrayList<>();
+        Map<File, Scan> scans = new ConcurrentHashMap<>();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (Queue<File> queue : devices.values()) {
+            for (int i = 0; i < Math.min(maxPerDevice, queue.size()); i++) {
+                workers.add(() -> {
+                    File root;
+                    while((root = queue.poll()) != null && !handler.isInterrupted() && failure.get() == null){
+                        try{
+                            scans.put(root, scan(name, root, indexes.apply(root), handler));
+                        }catch(RuntimeException ex){
+                            failure.compareAndSet(null, ex);
+                        }
+                    }
+                });
+            }
+        }
+
+        if(!workers.isEmpty()){
+            ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+            workers.forEach(executor::execute);
+            executor.shutdown();
+            Concurrency.awaitUninterruptibly(executor);
+        }
+        if(failure.get() != null) throw failure.get();
+
+        Map<File, Scan> ordered = new LinkedHashMap<>();
+        for (File root : roots) {
+            Scan scan = scans.get(root);
+            if(scan != null) ordered.put(root, scan);
+        }
+        return ordered;
+    }
+
+    private Scan scan(String name, File root, PathIndex index, Handler handler){
+        return scanners.apply(new Scanner.Handler() {
+            @Override
+            public void setProgress(Scanner.Progress progress) {
+                handler.setProgress(root, progress);
+            }
+
+            @Override
+            public boolean isInterrupted() {
+                return handler.isInterrupted();
+            }
+        }).scan(name, root, index);
+    }
+
+    /**
+     * @return the root's file store; the root itself if it cannot be read, so it is scanned on its own.
+     */
+    private static Object getDevice(File root){
+        try {
+            return Files.getFileStore(root.toPath()); //file stores are equal if on the same device.
+        } catch (IOException | SecurityException ex) {
+            return root;
+        }
+    }
+
+
+}
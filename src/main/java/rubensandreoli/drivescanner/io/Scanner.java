@@ -17,92 +17,708 @@
 package rubensandreoli.drivescanner.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Scanner {
 
     //<editor-fold defaultstate="collapsed" desc="HANDLER">
     public static interface Handler{
-        void setStatus(String status);
+        /**
+         * Invoked at a fixed rate from another thread while scanning or updating,
+         * and once more when finished; the same object is passed every time.
+         */
+        void setProgress(Progress progress);
         boolean isInterrupted();
     }
     //</editor-fold>
     
+    //<editor-fold defaultstate="collapsed" desc="PROGRESS">
+    /**
+     * Counters of a scan or update; the crawling threads only increment them,
+     * so reporting never costs more than reading them.
+     */
+    public static class Progress{
+        
+        private final long start = System.nanoTime();
+        private final long expectedFolders, expectedBytes; //0 if unknown.
+        private final LongAdder folders = new LongAdder();
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder revisited = new LongAdder();
+        private final LongAdder unfollowed = new LongAdder();
+        private final Exclusions exclusions; //null if none.
+        private final LongAdder[] hits; //per exclusion rule.
+        private volatile Folder current; //its file is only built when reported.
+
+        private Progress(long expectedFolders, long expectedBytes, Exclusions exclusions) {
+            this.expectedFolders = expectedFolders;
+            this.expectedBytes = expectedBytes;
+            this.exclusions = exclusions;
+            hits = new LongAdder[exclusions == null? 0 : exclusions.getRules().size()];
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] = new LongAdder();
+            }
+        }
+        
+        private void addFolder(Folder folder, boolean read){
+            current = folder;
+            folders.increment();
+            if(read){
+                files.add(folder.getTotalFiles());
+                bytes.add(folder.getCurrentSize());
+            }
+        }
+
+        /**
+         * @return folders visited, or read when updating.
+         */
+        public long getFolders() {
+            return folders.sum();
+        }
+
+        /**
+         * @return files read; files in folders known from previous scans are not read.
+         */
+        public long getFiles() {
+            return files.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return folders that could not be read.
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @return folders skipped as unchanged when updating, as covered by
+         * previous scans, or as not sampled when estimating.
+         */
+        public long getSkipped() {
+            return skipped.sum();
+        }
+
+        /**
+         * @return folders not crawled because they were already visited through
+         * another path, as with bind mounts and links.
+         */
+        public long getRevisited() {
+            return revisited.sum();
+        }
+
+        /**
+         * @return links and folders on other file systems not crawled; see
+         * {@link Scanner#setFollowLinks} and {@link Scanner#setSameFileSystem}.
+         */
+        public long getUnfollowed() {
+            return unfollowed.sum();
+        }
+
+        /**
+         * @return folders pruned by exclusion rules; their subfolders are not counted.
+         */
+        public long getExcluded() {
+            long excluded = 0L;
+            for (LongAdder hit : hits) {
+                excluded += hit.sum();
+            }
+            return excluded;
+        }
+
+        /**
+         * @return folders pruned by each exclusion rule, in the order the rules were given.
+         */
+        public Map<String, Long> getExclusionHits() {
+            Map<String, Long> ruleHits = new LinkedHashMap<>();
+            for (int i = 0; i < hits.length; i++) {
+                ruleHits.merge(exclusions.getRules().get(i), hits[i].sum(), Long::sum); //same rule may be given twice.
+            }
+            return ruleHits;
+        }
+
+        /**
+         * @return last folder visited; {@code null} if none yet.
+         */
+        public File getCurrent() {
+            Folder folder = current;
+            return folder == null? null : folder.getFile();
+        }
+        
+        /**
+         * @return milliseconds since started.
+         */
+        public long getElapsed(){
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        
+        /**
+         * @return fraction of the work done, from 0 to 1; -1 if unknown.
+         */
+        public double getDone(){
+            if(expectedFolders > 0) return Math.min(1.0, (double) (getFolders() + getSkipped()) / expectedFolders);
+            if(expectedBytes > 0) return Math.min(1.0, (double) getBytes() / expectedBytes);
+            return -1;
+        }
+        
+        /**
+         * @return estimated milliseconds to finish; -1 if unknown.
+         */
+        public long getRemaining(){
+            double done = getDone();
+            if(done <= 0) return -1;
+            return (long) (getElapsed() * (1 - done) / done);
+        }
+        
+    }
+    //</editor-fold>
+    
+    //<editor-fold defaultstate="collapsed" desc="SCAN STATE">
+    /**
+     * What the threads of a single scan share.
+     */
+    private static class ScanState{
+        final Set<Folder> newFolders = Scan.getNewFolderSet(); //guarded by itself.
+        final Rollups rollups;
+        final PathIndex index; //only read.
+        final FileKeySet visited = new FileKeySet();
+        final long device; //of the drive.
+        final AllocationCounter allocation; //null if not counted.
+        final Progress progress;
+        Checkpoint.Writer checkpoint; //null if not checkpointed.
+        RunFile run; //null if not spilled.
+        Sampling sampling; //null if not estimating.
+
+        ScanState(File drive, PathIndex index, long device, AllocationCounter allocation, Progress progress) {
+            rollups = new Rollups(drive);
+            this.index = index;
+            this.device = device;
+            this.allocation = allocation;
+            this.progress = progress;
+        }
+    }
+    //</editor-fold>
+    
+    public static enum Engine{
+        RECURSIVE, //single-threaded, depth-first; depth limited by the thread stack.
+        ITERATIVE, //single-threaded, explicit frontier; see Order.
+        FORK_JOIN, //work-stealing pool, one task per subfolder.
+        VIRTUAL //one virtual thread per subfolder, for network drives; see setMaxReads.
+    }
+    
+    public static enum Order{
+        DEPTH_FIRST, BREADTH_FIRST
+    }
+    
+    public static enum Reader{
+        IO, //java.io; several attribute queries per entry; no file keys, so folders reached twice are not detected.
+        NIO //java.nio; one attributes read per entry.
+    }
+    
+    private static final long PROGRESS_RATE = 250; //milliseconds between progress reports.
+    private static final FolderReader.Listing UNREADABLE = new FolderReader.Listing(false); //concurrent maps do not take null values.
+    
     private final Handler handler;
+    private Engine engine = Engine.ITERATIVE;
+    private Order order = Order.DEPTH_FIRST;
+    private FolderReader reader = new NioFolderReader();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxReads = 64;
+    private volatile Throttle throttle; //null if not throttled.
+    private boolean skipCovered;
+    private Exclusions exclusions; //null if none.
+    private boolean followLinks = true;
+    private boolean sameFileSystem;
+    private boolean countAllocated;
+    private Checkpoint checkpoint; //null if not checkpointed.
+    private File spillFolder; //null if not spilled.
+    private volatile Progress progress; //of the last scan or update.
 
     public Scanner(Handler handler) {
        this.handler = handler;
     }
+    
+    /**
+     * @param engine also sets the concurrency used to read folders on update.
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @param order used only by the iterative engine.
+     */
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public void setReader(Reader reader) {
+        this.reader = reader == Reader.IO? new FileFolderReader() : new NioFolderReader();
+    }
+
+    /**
+     * @param throttle paces every read made by this scanner; {@code null} to not throttle.
+     * It can be adjusted while scanning.
+     */
+    public void setThrottle(Throttle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * @param skipCovered if {@code true} subtrees whose every folder is already in a
+     * previous scan are not crawled; folders created inside them since will not be found.
+     */
+    public void setSkipCovered(boolean skipCovered) {
+        this.skipCovered = skipCovered;
+    }
+
+    /**
+     * @param exclusions folders pruned from scans before being listed; {@code null} for none.
+     * The drive itself is never excluded, and updates read the folders of the scan regardless.
+     */
+    public void setExclusions(Exclusions exclusions) {
+        this.exclusions = exclusions == null || exclusions.isEmpty()? null : exclusions;
+    }
+
+    /**
+     * @param followLinks if {@code false} links to folders are not crawled, at
+     * the cost of one more attribute read per folder.
+     * <br>Either way, a folder reached by more than one path is crawled only under
+     * the first one reached, if the reader provides file keys.
+     */
+    public void setFollowLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+    }
+
+    /**
+     * @param sameFileSystem if {@code true} folders on a device other than the
+     * drive's are not crawled; needs a reader with file keys.
+     */
+    public void setSameFileSystem(boolean sameFileSystem) {
+        this.sameFileSystem = sameFileSystem;
+    }
+
+    /**
+     * @param countAllocated if {@code true} the space files take on disk is also
+     * counted, each file key only once per scan or update, so hard links are not
+     * counted twice. Sizes are rounded up to the file store's block size.
+     * <br>Updates only know the keys of the files in the folders they read again,
+     * so a file linked from a folder read and from one skipped is counted in both.
+     * If {@code false}, updates keep the sizes counted before.
+     */
+    public void setCountAllocated(boolean countAllocated) {
+        this.countAllocated = countAllocated;
+    }
+
+    /**
+     * @param checkpoint where the progress of scans is written at its interval; a scan
+     * of the same drive found in it is resumed instead of starting over. It is deleted
+     * when a scan finishes without being interrupted. {@code null} to not checkpoint.
+     */
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @param spillFolder where a temporary run file is created for each scan; new
+     * folders' files are written to it as they are read, instead of being kept in
+     * memory. The run file becomes the sidecar of the scan when it is saved by the
+     * {@link Repository}. {@code null} to keep files in memory.
+     */
+    public void setSpillFolder(File spillFolder) {
+        this.spillFolder = spillFolder;
+    }
+
+    /**
+     * @param parallelism number of worker threads used by concurrent engines.
+     */
+    public void setParallelism(int parallelism) {
+        if(parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * @param maxReads maximum number of folders read at the same time by the virtual engine.
+     */
+    public void setMaxReads(int maxReads) {
+        if(maxReads < 1) throw new IllegalArgumentException("maxReads must be positive");
+        this.maxReads = maxReads;
+    }
+    
+    /**
+     * @return {@code false} if the virtual engine will fall back to platform threads.
+     */
+    public static boolean isVirtualThreadSupported(){
+        return VirtualThreadCrawler.isVirtualThreadSupported();
+    }
  
-    public Scan scan(String name, File drive, Set<Folder> oldFolders) {
-        Set<Folder> newFolders = Scan.getNewFolderSet();
-        this.folderCrawler(new Folder(drive), newFolders, oldFolders);
-        return new Scan(name, drive, newFolders); //no need to interrupt scan creation if the crawler finished already.
+    /**
+     * Folders are added in the order they are visited, so concurrent engines
+     * will not reproduce the sequential order, although the set is the same.
+     * 
+     * @param index folders of previous scans of the drive; they are crawled, but not added again.
+     */
+    public Scan scan(String name, File drive, PathIndex index) {
+        return scan(name, drive, index, null, checkpoint);
+    }
+    
+    /**
+     * Quick scan that crawls every folder down to {@code fullDepth} levels below the
+     * drive, but only a random fraction of the subfolders of each folder below that.
+     * The crawled folders are exact, so the scan can be refined later.
+     * <br>Checkpoints are not used.
+     * 
+     * @param fraction of the subfolders crawled below the full depth; greater than 0 and at most 1.
+     * @return scan of the crawled folders, with the extrapolated totals of every
+     * folder down to the full depth; see {@link Scan#getEstimates}.
+     */
+    public Scan estimate(String name, File drive, PathIndex index, int fullDepth, double fraction) {
+        Sampling sampling = new Sampling(drive, fullDepth, fraction);
+        Scan scan = scan(name, drive, index, sampling, null);
+        scan.setEstimates(sampling.getEstimates());
+        return scan;
+    }
+    
+    /**
+     * Crawls the drive of an estimated scan again, adding the folders it left out.
+     * <br>Checkpoints are not used, so those of interrupted scans of the drive are kept.
+     * 
+     * @param index as in {@link #scan}; folders of the estimated scan are not read again.
+     * @return exact copy of the scan; {@code null} if interrupted, the scan being left as it is.
+     */
+    public Scan refine(Scan estimated, PathIndex index) {
+        PathIndex known = new PathIndex(index); //the drive's index is left as it is.
+        known.addAll(estimated.getFolders()); //already in the index if the estimate was saved, which does no harm.
+        Scan rest = scan(estimated.getName(), estimated.getDrive(), known, null, null);
+        if(handler.isInterrupted()) return null;
+        Scan refined = estimated.getCopy();
+        refined.addFolders(rest.getFolders());
+        refined.setEstimates(null);
+        return refined;
+    }
+    
+    /**
+     * @param checkpoint {@code null} to not checkpoint.
+     */
+    private Scan scan(String name, File drive, PathIndex index, Sampling sampling, Checkpoint checkpoint) {
+        final Progress progress = new Progress(0, index.isEmpty() && exclusions == null && sampling == null? getUsedSpace(drive) : 0, exclusions); //known, excluded or not sampled folders' sizes are not read, so they would not add up.
+        final FolderReader.Stamp driveStamp = reader.readStamp(drive);
+        final ScanState state = new ScanState(drive, index, driveStamp == null? FileKeySet.UNKNOWN_DEVICE : driveStamp.device, 
+                countAllocated? new AllocationCounter() : null, progress);
+        if(driveStamp != null) state.visited.add(driveStamp.device, driveStamp.inode);
+        state.sampling = sampling;
+        
+        if(spillFolder != null){ //before resuming, so restored folders are spilled too.
+            try {
+                state.run = RunFile.createTemporary(spillFolder);
+            } catch (IOException ex) {} //files are kept in memory.
+        }
+        
+        List<Folder> frontier = null; //null if not resuming.
+        if(checkpoint != null){
+            Checkpoint.Replay replay = checkpoint.read(drive);
+            frontier = replay == null? null : resume(replay, state);
+            try {
+                state.checkpoint = checkpoint.open(drive, frontier == null? null : replay);
+            } catch (IOException ex) {} //scans without checkpoints.
+        }
+        
+        final Folder root = new Folder(drive);
+        final List<Folder> resumed = frontier;
+        Crawler.Visitor visitor = resumed == null? folder -> folderVisitor(folder, state) : folder -> folder == root? resumed : folderVisitor(folder, state);
+        ScheduledExecutorService sampler = startProgress(progress);
+        if(state.checkpoint != null){
+            sampler.scheduleWithFixedDelay(state.checkpoint::flush, checkpoint.getInterval(), checkpoint.getInterval(), TimeUnit.MILLISECONDS);
+        }
+        try{
+            this.createCrawler().crawl(root, visitor);
+        }finally{
+            stopProgress(sampler);
+            if(state.checkpoint != null) state.checkpoint.close(); //what was crawled until interrupted is kept.
+        }
+        if(checkpoint != null && !handler.isInterrupted()) checkpoint.delete();
+        Scan scan = new Scan(name, drive, state.newFolders, state.rollups); //no need to interrupt scan creation if the crawler finished already.
+        if(state.run != null){
+            try {
+                state.run.close();
+            } catch (IOException ex) {} //tables that failed will be read as empty.
+            scan.attach(state.run);
+        }
+        return scan;
+    }
+    
+    /**
+     * Restores the folders of a checkpoint.
+     * 
+     * @return folders passed on to the crawler, but not yet crawled; {@code null} if the checkpoint is empty.
+     */
+    private static List<Folder> resume(Checkpoint.Replay replay, ScanState state){
+        if(replay.records.isEmpty()) return null;
+        Set<File> crawled = new HashSet<>();
+        FolderPath.Interner interner = new FolderPath.Interner(); //records are read with whole paths.
+        for (Checkpoint.Record record : replay.records) {
+            crawled.add(record.folder.getFile());
+            record.folder.intern(interner);
+        }
+        List<Folder> frontier = new ArrayList<>();
+        for (Checkpoint.Record record : replay.records) {
+            if(record.isNew && state.newFolders.add(record.folder)){
+                state.rollups.add(record.folder);
+                if(state.run != null){
+                    try {
+                        record.folder.spill(state.run);
+                    } catch (IOException ex) {} //kept in memory.
+                }
+            }
+            state.progress.addFolder(record.folder, record.isNew);
+            for (FolderReader.Subfolder subfolder : record.subfolders) {
+                state.visited.add(subfolder.device, subfolder.inode);
+                if(!crawled.contains(subfolder.file)){
+                    Folder folder = new Folder(subfolder.file);
+                    folder.intern(interner);
+                    frontier.add(folder);
+                }
+            }
+        }
+        return frontier;
     }
     
     public static File[] getRoots(){
         return File.listRoots();
     }
+    
+    private static long getUsedSpace(File drive){
+        try {
+            FileStore store = Files.getFileStore(drive.toPath());
+            return store.getTotalSpace() - store.getUnallocatedSpace();
+        } catch (IOException | SecurityException ex) {
+            return 0L;
+        }
+    }
+    
+    private ScheduledExecutorService startProgress(Progress progress){
+        this.progress = progress;
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Scanner Progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> handler.setProgress(progress), 0, PROGRESS_RATE, TimeUnit.MILLISECONDS);
+        return sampler;
+    }
+    
+    private void stopProgress(ScheduledExecutorService sampler){
+        sampler.shutdown(); //cancels further reports.
+        handler.setProgress(progress);
+    }
+    
+    private Crawler createCrawler(){
+        switch(engine){
+            case RECURSIVE:
+                return new RecursiveCrawler();
+            case FORK_JOIN:
+                return new ForkJoinCrawler(parallelism);
+            case VIRTUAL:
+                return new VirtualThreadCrawler(maxReads);
+            default:
+                return new IterativeCrawler(order == Order.DEPTH_FIRST);
+        }
+    }
 
-    private void folderCrawler(Folder folder, Set<Folder> newFolders, Set<Folder> oldFolders) { //TODO: try to improve performance.
-        File[] folderFiles = folder.getFile().listFiles();
-        //Check folder size and add to Map if folder is not registered in previous scans:
-        if (!oldFolders.contains(folder)) {
-            Map<String, Long> files = Folder.getNewFileMap();
-            for (File childFile : folderFiles) {
-                if(handler.isInterrupted()) return;
-                if (childFile.isFile()) {
-                    files.put(childFile.getName(), childFile.length());
-                }
+    private FolderReader.Listing read(File folder, boolean withFiles, AllocationCounter allocation){
+        Throttle throttle = this.throttle; //may be replaced while reading.
+        if(throttle == null) return reader.read(folder, withFiles, allocation);
+        throttle.beforeListing(handler::isInterrupted);
+        long start = System.nanoTime();
+        FolderReader.Listing listing = reader.read(folder, withFiles, allocation);
+        throttle.afterListing(System.nanoTime() - start, listing == null? 0 : listing.entries, handler::isInterrupted);
+        return listing;
+    }
+    
+    private FolderReader.Stamp readStamp(File folder){
+        Throttle throttle = this.throttle;
+        if(throttle == null) return reader.readStamp(folder);
+        long start = System.nanoTime();
+        FolderReader.Stamp stamp = reader.readStamp(folder);
+        throttle.afterListing(System.nanoTime() - start, 1, handler::isInterrupted); //not a listing, but it still reads one entry.
+        return stamp;
+    }
+    
+    private List<Folder> folderVisitor(Folder folder, ScanState state) {
+        final Progress progress = state.progress;
+        if(handler.isInterrupted()) return Collections.emptyList();
+        final File file = folder.getFile();
+        //Read file sizes only if folder is not registered in previous scans:
+        PathIndex.Node node = state.index.find(folder.getPath());
+        boolean isNew = node == null || !node.isCovered();
+        if(skipCovered && !isNew && node.isComplete()){
+            progress.skipped.increment();
+            return Collections.emptyList();
+        }
+        FolderReader.Listing listing = read(file, isNew || state.sampling != null, state.allocation); //estimates need the files of every folder crawled.
+        if(listing == null){ //unreadable folders are neither added nor crawled.
+            progress.errors.increment();
+            return Collections.emptyList();
+        }
+        if(handler.isInterrupted()) return Collections.emptyList();
+        if(state.sampling != null) state.sampling.add(file, listing.files);
+        if (isNew) {
+            folder.setFiles(listing.files);
+            folder.setStamp(listing.stamp);
+            folder.setAllocatedSize(listing.allocated);
+            if(state.run != null){
+                try {
+                    folder.spill(state.run);
+                } catch (IOException ex) {} //kept in memory.
             }
-            folder.setFiles(files);
-            newFolders.add(folder); 
-        }
-        handler.setStatus(folder.toString());
-        //Crawl if file is directory and its not empty:
-        for (File childFile : folderFiles) {
-            if(handler.isInterrupted()) return;
-            if (childFile.isDirectory()) {
-                File[] grandchildFiles = childFile.listFiles();
-                if (grandchildFiles != null) {
-                    this.folderCrawler(new Folder(childFile), newFolders, oldFolders);
-                }
+            boolean added;
+            synchronized(state.newFolders){
+                added = state.newFolders.add(folder);
+            }
+            if(added) state.rollups.add(folder); //totals of the folders above it grow as it is crawled.
+        }
+        progress.addFolder(folder, isNew);
+        List<Folder> subfolders = new ArrayList<>(listing.subfolders.size());
+        List<FolderReader.Subfolder> crawled = state.checkpoint == null? null : new ArrayList<>(listing.subfolders.size());
+        Exclusions exclusions = progress.exclusions;
+        for (FolderReader.Subfolder subfolder : listing.subfolders) { //pruned before being listed:
+            int rule = exclusions == null? -1 : exclusions.match(subfolder.file);
+            if(rule != -1){
+                progress.hits[rule].increment();
+                continue;
+            }
+            if((!followLinks && Files.isSymbolicLink(subfolder.file.toPath())) || 
+                    (sameFileSystem && isOtherDevice(subfolder.device, state.device))){
+                progress.unfollowed.increment();
+                continue;
             }
+            if(!state.visited.add(subfolder.device, subfolder.inode)){
+                progress.revisited.increment();
+                continue;
+            }
+            subfolders.add(new Folder(folder.getPath().resolve(subfolder.file.getName()))); //shares the folder's path.
+            if(crawled != null) crawled.add(subfolder);
+        }
+        if(crawled != null) state.checkpoint.add(new Checkpoint.Record(folder, isNew, crawled));
+        if(state.sampling != null){
+            List<Folder> sampled = state.sampling.sample(file, subfolders);
+            progress.skipped.add(subfolders.size() - sampled.size());
+            return sampled;
         }
+        return subfolders;
+    }
+
+    private static boolean isOtherDevice(long keyDevice, long device){
+        return device != FileKeySet.UNKNOWN_DEVICE && keyDevice != FileKeySet.UNKNOWN_DEVICE && keyDevice != device; //unknown devices are taken as the same.
     }
 
-    public void update(Scan scan) { //TODO: try to improve performance.
-        Map<Folder, Map<String, Long>> cache = new HashMap<>();
-        for (Folder folder : scan.getFolders()) {
-            if(handler.isInterrupted()) return;
-            handler.setStatus(folder.toString());
-            File folderFile = folder.getFile();
-            
-            if (!folderFile.canRead()) {
-                cache.put(folder, null);
-            } else {
-                Map<String, Long> files = Folder.getNewFileMap();
-                File[] folderFiles = folderFile.listFiles();
-                if (folderFiles != null) {
-                    for (File childFile : folderFiles) {
-                        if(handler.isInterrupted()) return;
-                        if (childFile.isFile()) {
-                            files.put(childFile.getName(), childFile.length());
-                        }
+    /**
+     * Reads every folder again; see {@link #update(Scan, boolean)}.
+     */
+    public void update(Scan scan) {
+        update(scan, true);
+    }
+    
+    /**
+     * Folders are read with the concurrency of the selected engine, but the scan
+     * is only changed after all of them were read, so an interrupted update
+     * leaves it untouched.
+     * <br>Adding, removing or renaming entries changes a folder's modified time, but
+     * changing the content of a file does not; such changes are only found when verifying.
+     * 
+     * @param verify if {@code false} only folders whose modified time or file key
+     * changed since they were last read are listed again; the others are skipped.
+     */
+    public void update(Scan scan, boolean verify) {
+        update(scan, scan.getFolders(), verify);
+    }
+    
+    /**
+     * Reads again only the folders the watcher saw changing, and the ones it
+     * could not watch; if the watcher lost events, it verifies every folder instead.
+     */
+    public void update(Scan scan, Watcher watcher) {
+        Watcher.Changes changes = watcher.drain();
+        changes.folders.retainAll(scan.getFolders()); //folders may have been removed from the scan after it was watched.
+        boolean updated = changes.overflowed? update(scan, scan.getFolders(), true) : update(scan, changes.folders, true);
+        if(!updated) watcher.restore(changes);
+    }
+    
+    /**
+     * @param folders to be read; the others are kept as they are.
+     * @return {@code false} if interrupted.
+     */
+    private boolean update(Scan scan, Collection<Folder> folders, boolean verify) {
+        final Map<Folder, FolderReader.Listing> cache = new ConcurrentHashMap<>();
+        final AllocationCounter allocation = countAllocated? new AllocationCounter() : null; //folders not read keep their count.
+        final Progress progress = new Progress(scan.getTotalFolders(), 0, null);
+        progress.skipped.add(scan.getTotalFolders() - folders.size()); //folders that will not even be checked.
+        ScheduledExecutorService sampler = startProgress(progress);
+        try{
+            this.createCrawler().forEach(folders, folder -> {
+                if(handler.isInterrupted()) return;
+                if(!verify){
+                    FolderReader.Stamp stamp = readStamp(folder.getFile());
+                    if(stamp != null && folder.isStamped(stamp)){
+                        progress.skipped.increment();
+                        return;
                     }
                 }
-                cache.put(folder, files);
-            }
+                FolderReader.Listing listing = read(folder.getFile(), true, allocation);
+                cache.put(folder, listing == null? UNREADABLE : listing);
+                progress.current = folder;
+                progress.folders.increment();
+                if(listing != null){
+                    progress.files.add(listing.files.size());
+                    progress.bytes.add(listing.files.getTotalSize());
+                }
+            });
+        }finally{
+            stopProgress(sampler);
         }
+        if(handler.isInterrupted()) return false;
         //cannot be interrupted after this point.
-        for (Map.Entry<Folder, Map<String, Long>> entry : cache.entrySet()) {
+        for (Map.Entry<Folder, FolderReader.Listing> entry : cache.entrySet()) {
             Folder folder = entry.getKey();
-            folder.setFiles(entry.getValue()); 
+            FolderReader.Listing listing = entry.getValue();
+            if(listing == UNREADABLE){
+                scan.setFiles(folder, null); //marks the folder as deleted.
+            }else{
+                scan.setFiles(folder, listing.files);
+                folder.setStamp(listing.stamp);
+                if(allocation != null) folder.setAllocatedSize(listing.allocated); //otherwise the count of an earlier scan is kept.
+            }
         }
         scan.setUpdated(new Date());
+        return true;
+    }
+    
+    /**
+     * @return counters of the last scan or update; {@code null} if none was performed.
+     */
+    public Progress getProgress() {
+        return progress;
     }
 
 }
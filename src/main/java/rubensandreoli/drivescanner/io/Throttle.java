@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Paces the reads made by a {@link Scanner}, so that scanning a busy host does
+ * not starve other processes of file system metadata access.
+ * <br>Limits can be changed while a scan is running; they are shared by all
+ * threads of the scan.
+ */
+public class Throttle {
+
+    private static final double CONGESTION_RATIO = 2.0; //recent latency over baseline that is considered congestion.
+    private static final double RECENT_WEIGHT = 0.1, BASELINE_WEIGHT = 0.002; //baseline takes hundreds of reads to follow a lasting change.
+    private static final long MIN_PAUSE = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_PAUSE = TimeUnit.SECONDS.toNanos(1);
+    private static final long SLEEP_SLICE = TimeUnit.MILLISECONDS.toNanos(50); //longest wait before an interruption is seen.
+    
+    private volatile double listingsPerSecond; //0 is unlimited.
+    private volatile double entriesPerSecond;
+    private volatile boolean adaptive;
+    
+    //guarded by this; nanoTime based:
+    private long nextListing, nextEntry;
+    private double recentLatency, baselineLatency = -1; //moving averages, per entry read.
+    private long pause; //added before each listing while congested.
+
+    /**
+     * @param listingsPerSecond maximum folders listed per second; 0 for no limit.
+     * @param entriesPerSecond maximum entries read per second; 0 for no limit.
+     * @param adaptive if {@code true} reads are slowed down while their latency is rising.
+     */
+    public Throttle(double listingsPerSecond, double entriesPerSecond, boolean adaptive) {
+        setListingsPerSecond(listingsPerSecond);
+        setEntriesPerSecond(entriesPerSecond);
+        this.adaptive = adaptive;
+    }
+    
+    /**
+     * @param interrupted checked while waiting, so that the wait ends as soon as the scan is interrupted.
+     */
+    void beforeListing(BooleanSupplier interrupted){
+        long wait;
+        synchronized(this){
+            wait = reserve(listingsPerSecond, 1, true) + pause;
+        }
+        sleep(wait, interrupted);
+    }
+    
+    /**
+     * @param nanos time spent reading.
+     * @param entries number of entries read.
+     * @param interrupted checked while waiting, so that the wait ends as soon as the scan is interrupted.
+     */
+    void afterListing(long nanos, int entries, BooleanSupplier interrupted){
+        long wait;
+        synchronized(this){
+            if(adaptive) adapt((double) nanos / (entries + 1));
+            wait = reserve(entriesPerSecond, entries, false);
+        }
+        sleep(wait, interrupted);
+    }
+    
+    private long reserve(double rate, int permits, boolean listing){
+        if(rate <= 0 || permits == 0) return 0L;
+        long now = System.nanoTime();
+        long next = listing? nextListing : nextEntry;
+        long start = Math.max(now, next);
+        next = start + (long)(permits * TimeUnit.SECONDS.toNanos(1) / rate);
+        if(listing) nextListing = next;
+        else nextEntry = next;
+        return start - now;
+    }
+    
+    private void adapt(double latency){
+        if(baselineLatency < 0){
+            recentLatency = baselineLatency = latency;
+        }else{
+            recentLatency += (latency - recentLatency) * RECENT_WEIGHT;
+            baselineLatency += (latency - baselineLatency) * BASELINE_WEIGHT;
+        }
+        if(recentLatency > baselineLatency * CONGESTION_RATIO){
+            pause = Math.min(MAX_PAUSE, Math.max(MIN_PAUSE, pause * 2));
+        }else{
+            pause /= 2;
+            if(pause < MIN_PAUSE) pause = 0L;
+        }
+    }
+    
+    private static void sleep(long nanos, BooleanSupplier interrupted){
+        long end = System.nanoTime() + nanos;
+        for (long left = nanos; left > 0 && !interrupted.getAsBoolean(); left = end - System.nanoTime()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(left, SLEEP_SLICE));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public double getListingsPerSecond() {
+        return listingsPerSecond;
+    }
+
+    public void setListingsPerSecond(double listingsPerSecond) {
+        if(listingsPerSecond < 0) throw new IllegalArgumentException("rate cannot be negative");
+        this.listingsPerSecond = listingsPerSecond;
+    }
+
+    public double getEntriesPerSecond() {
+        return entriesPerSecond;
+    }
+
+    public void setEntriesPerSecond(double entriesPerSecond) {
+        if(entriesPerSecond < 0) throw new IllegalArgumentException("rate cannot be negative");
+        this.entriesPerSecond = entriesPerSecond;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public synchronized void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        if(!adaptive) pause = 0L;
+    }
+    
+}
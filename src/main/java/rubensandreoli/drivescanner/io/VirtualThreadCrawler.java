@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Crawler for latency bound file systems (network shares); every folder is
+ * visited on its own virtual thread, so many listings wait on the server at
+ * the same time, while a semaphore caps how many are actually in flight.
+ * <br>Virtual threads are looked up at runtime; before Java 21 a pool of
+ * platform threads, one per permit, is used instead.
+ */
+class VirtualThreadCrawler extends Crawler {
+
+    private final int maxReads;
+    
+    /**
+     * @param maxReads maximum number of folders being read at the same time.
+     */
+    VirtualThreadCrawler(int maxReads) {
+        this.maxReads = maxReads;
+    }
+    
+    static boolean isVirtualThreadSupported(){
+        ExecutorService executor = createVirtualExecutor();
+        if(executor == null) return false;
+        executor.shutdown();
+        return true;
+    }
+    
+    private static ExecutorService createVirtualExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) { //not found before Java 19; fails without preview features before Java 21.
+            return null;
+        }
+    }
+
+    private ExecutorService createExecutor(){
+        ExecutorService executor = createVirtualExecutor();
+        return executor != null? executor : Executors.newFixedThreadPool(maxReads);
+    }
+    
+    @Override
+    void crawl(Folder root, Visitor visitor) {
+        ExecutorService executor = createExecutor();
+        try{
+            new Crawl(executor, visitor).run(root);
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    void forEach(Collection<Folder> folders, Consumer<Folder> action) {
+        ExecutorService executor = createExecutor();
+        Semaphore permits = new Semaphore(maxReads);
+        CountDownLatch done = new CountDownLatch(folders.size());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try{
+            for (Folder folder : folders) {
+                permits.acquireUninterruptibly(); //acquired before starting the thread, so at most maxReads threads exist at once.
+                executor.execute(() -> {
+                    try{
+                        if(failure.get() == null) action.accept(folder);
+                    }catch(RuntimeException ex){
+                        failure.compareAndSet(null, ex);
+                    }finally{
+                        permits.release();
+                        done.countDown();
+                    }
+                });
+            }
+            Concurrency.awaitUninterruptibly(done);
+        }finally{
+            executor.shutdown();
+        }
+        if(failure.get() != null) throw failure.get();
+    }
+    
+    //<editor-fold defaultstate="collapsed" desc="CRAWL">
+    private class Crawl{
+        
+        private final ExecutorService executor;
+        private final Visitor visitor;
+        private final Semaphore permits = new Semaphore(maxReads);
+        private final AtomicInteger pending = new AtomicInteger(); //submitted but not finished folders.
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        private Crawl(ExecutorService executor, Visitor visitor) {
+            this.executor = executor;
+            this.visitor = visitor;
+        }
+        
+        private void run(Folder root){
+            submit(root);
+            Concurrency.awaitUninterruptibly(done);
+            if(failure.get() != null) throw failure.get();
+        }
+
+        private void submit(Folder folder){
+            pending.incrementAndGet(); //before the parent finishes, so pending never drops to zero early.
+            executor.execute(() -> {
+                try{
+                    if(failure.get() == null){
+                        List<Folder> subfolders;
+                        permits.acquireUninterruptibly();
+                        try{
+                            subfolders = visitor.visit(folder);
+                        }finally{
+                            permits.release();
+                        }
+                        for (Folder subfolder : subfolders) {
+                            submit(subfolder);
+                        }
+                    }
+                }catch(RuntimeException ex){
+                    failure.compareAndSet(null, ex);
+                }finally{
+                    if(pending.decrementAndGet() == 0) done.countDown();
+                }
+            });
+        }
+    
+    }
+    //</editor-fold>
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which folders of a scan changed since the last update, so that
+ * {@link Scanner#update(Scan, Watcher)} only reads those again.
+ * <br>Only up to a maximum number of folders are watched; the others, and
+ * folders that could not be registered, are always read again.
+ */
+public class Watcher implements Closeable {
+
+    //<editor-fold defaultstate="collapsed" desc="CHANGES">
+    static class Changes{
+        final Set<Folder> folders;
+        final boolean overflowed; //events were lost; every folder must be read again.
+
+        private Changes(Set<Folder> folders, boolean overflowed) {
+            this.folders = folders;
+            this.overflowed = overflowed;
+        }
+    }
+    //</editor-fold>
+    
+    public static final int DEFAULT_MAX_KEYS = 8192; //default inotify limit on older Linux kernels.
+    
+    private final WatchService service;
+    private final Map<WatchKey, Folder> keys = new HashMap<>();
+    private final Set<Folder> unwatched = new HashSet<>();
+    private Set<Folder> dirty = new HashSet<>();
+    private boolean overflowed;
+    private final Thread thread;
+    
+    /**
+     * Registers the scan's folders and starts watching them on a daemon thread.
+     * 
+     * @param maxKeys maximum number of folders watched.
+     */
+    public Watcher(Scan scan, int maxKeys) throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+        for (Folder folder : scan.getFolders()) {
+            if(keys.size() >= maxKeys){
+                unwatched.add(folder);
+                continue;
+            }
+            try{
+                WatchKey key = folder.getFile().toPath().register(service, 
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(key, folder);
+            }catch(IOException | SecurityException ex){ //deleted or unreadable folders.
+                unwatched.add(folder);
+            }
+        }
+        thread = new Thread(this::watch, "Scan Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public Watcher(Scan scan) throws IOException {
+        this(scan, DEFAULT_MAX_KEYS);
+    }
+    
+    private void watch(){
+        try{
+            while(true){
+                WatchKey key = service.take();
+                Folder folder;
+                synchronized(this){
+                    folder = keys.get(key);
+                }
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                        synchronized(this){
+                            overflowed = true;
+                        }
+                    }else{
+                        changed = true;
+                    }
+                }
+                synchronized(this){
+                    if(!key.reset()){ //folder was deleted or can no longer be read.
+                        keys.remove(key);
+                        unwatched.add(folder);
+                    }else if(changed){
+                        dirty.add(folder);
+                    }
+                }
+            }
+        }catch(ClosedWatchServiceException | InterruptedException ex){
+            //closed.
+        }
+    }
+    
+    /**
+     * Takes the folders changed so far; changes that arrive afterwards are kept
+     * for the next call.
+     */
+    synchronized Changes drain(){
+        Set<Folder> folders = dirty;
+        folders.addAll(unwatched);
+        Changes changes = new Changes(folders, overflowed);
+        dirty = new HashSet<>();
+        overflowed = false;
+        return changes;
+    }
+    
+    /**
+     * Gives back changes taken by an update that was interrupted.
+     */
+    synchronized void restore(Changes changes){
+        dirty.addAll(changes.folders);
+        overflowed |= changes.overflowed;
+    }
+    
+    public synchronized int getTotalWatched(){
+        return keys.size();
+    }
+    
+    public synchronized Set<Folder> getDirtyFolders(){
+        Set<Folder> folders = new HashSet<>(dirty);
+        folders.addAll(unwatched);
+        return Collections.unmodifiableSet(folders);
+    }
+    
+    public synchronized boolean isOverflowed(){
+        return overflowed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close(); //ends the watching thread.
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CrawlerTest {
+
+    private static final int LEVELS = 4, BREADTH = 3;
+
+    @TempDir
+    Path drive;
+
+    private int folders = 1; //the drive.
+
+    @BeforeEach
+    void createTree() throws IOException {
+        createTree(drive, LEVELS);
+    }
+
+    private void createTree(Path folder, int levels) throws IOException{
+        Files.write(folder.resolve("file"), new byte[levels]);
+        if(levels == 0) return;
+        for (int i = 0; i < BREADTH; i++) {
+            Path subfolder = Files.createDirectory(folder.resolve("sub"+i));
+            folders++;
+            createTree(subfolder, levels - 1);
+        }
+    }
+
+    private Scan scan(Scanner.Engine engine, Scanner.Order order){
+        Scanner scanner = new Scanner(new Scanner.Handler() {
+            @Override
+            public void setProgress(Scanner.Progress progress) {}
+
+            @Override
+            public boolean isInterrupted() {
+                return false;
+            }
+        });
+        scanner.setEngine(engine);
+        scanner.setOrder(order);
+        scanner.setParallelism(3);
+        return scanner.scan("test", drive.toFile(), new PathIndex(drive.toFile()));
+    }
+
+    private static Set<File> getFiles(Scan scan){
+        Set<File> files = new TreeSet<>();
+        for (Folder folder : scan.getFolders()) {
+            files.add(folder.getFile());
+        }
+        return files;
+    }
+
+    @Test
+    void crawlsTheSameFoldersWithEveryEngine() {
+        Scan expected = scan(Scanner.Engine.RECURSIVE, Scanner.Order.DEPTH_FIRST);
+        assertEquals(folders, expected.getTotalFolders());
+        for (Scanner.Engine engine : Scanner.Engine.values()) {
+            for (Scanner.Order order : Scanner.Order.values()) {
+                Scan scan = scan(engine, order);
+                assertEquals(getFiles(expected), getFiles(scan), engine+" "+order);
+                assertEquals(expected.getSize(), scan.getSize(), engine+" "+order);
+                assertEquals(expected.getRollup(drive.toFile()).getSize(), scan.getRollup(drive.toFile()).getSize());
+            }
+        }
+    }
+
+    @Test
+    void stopsWhenInterrupted() {
+        Scanner scanner = new Scanner(new Scanner.Handler() {
+            @Override
+            public void setProgress(Scanner.Progress progress) {}
+
+            @Override
+            public boolean isInterrupted() {
+                return true;
+            }
+        });
+        for (Scanner.Engine engine : Scanner.Engine.values()) {
+            scanner.setEngine(engine);
+            assertTrue(scanner.scan("test", drive.toFile(), new PathIndex(drive.toFile())).getTotalFolders() <= 1, engine.toString());
+        }
+    }
+
+}
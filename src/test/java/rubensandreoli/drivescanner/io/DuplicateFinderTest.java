@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DuplicateFinderTest {
+
+    @TempDir
+    Path drive;
+
+    private void write(String file, byte[] content) throws IOException{
+        Path path = drive.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+    private static byte[] content(int size, long seed){
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    private Scan scan(){
+        return new Scanner(new Scanner.Handler() {
+            @Override
+            public void setProgress(Scanner.Progress progress) {}
+
+            @Override
+            public boolean isInterrupted() {
+                return false;
+            }
+        }).scan("test", drive.toFile(), new PathIndex(drive.toFile()));
+    }
+
+    private static Set<Set<File>> find(DuplicateFinder finder, Scan scan){
+        Set<Set<File>> groups = new HashSet<>();
+        finder.find(scan.getFolders(), new DuplicateFinder.Handler() {
+            @Override
+            public void onDuplicates(long size, List<File> files) {
+                groups.add(new HashSet<>(files)); //reported one at a time.
+            }
+
+            @Override
+            public boolean isInterrupted() {
+                return false;
+            }
+        });
+        return groups;
+    }
+
+    private Set<File> files(String... names){
+        Set<File> files = new HashSet<>();
+        for (String name : names) {
+            files.add(drive.resolve(name).toFile());
+        }
+        return files;
+    }
+
+    @Test
+    void groupsSameContent() throws IOException {
+        write("a/small", content(100, 1));
+        write("b/small", content(100, 1));
+        write("c/small", content(100, 2)); //same size, other content.
+        write("a/other", content(101, 1));
+        assertEquals(Set.of(files("a/small", "b/small")), find(new DuplicateFinder(2), scan()));
+    }
+
+    @Test
+    void comparesWholeLargeFiles() throws IOException {
+        int size = 3 << 20; //more than the first and last blocks.
+        byte[] content = content(size, 3);
+        write("a/large", content);
+        write("b/large", content);
+        content[size / 2]++; //only in the middle, which the ends' hash does not cover.
+        write("c/large", content);
+        write("c/copy", content);
+        assertEquals(Set.of(files("a/large", "b/large"), files("c/large", "c/copy")), find(new DuplicateFinder(2), scan()));
+    }
+
+    @Test
+    void leavesOutSmallFiles() throws IOException {
+        write("a/empty", new byte[0]);
+        write("b/empty", new byte[0]);
+        write("a/tiny", content(10, 4));
+        write("b/tiny", content(10, 4));
+        DuplicateFinder finder = new DuplicateFinder(1);
+        Scan scan = scan();
+        assertEquals(Set.of(files("a/tiny", "b/tiny")), find(finder, scan));
+        finder.setMinSize(11);
+        assertEquals(Set.of(), find(finder, scan));
+    }
+
+    @Test
+    void leavesOutChangedFiles() throws IOException {
+        write("a/file", content(100, 5));
+        write("b/file", content(100, 5));
+        write("c/file", content(100, 5));
+        Scan scan = scan();
+        write("c/file", content(200, 5)); //grew since scanned.
+        assertEquals(Set.of(files("a/file", "b/file")), find(new DuplicateFinder(1), scan));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class FileChangesTest {
+
+    private static final FileTable ORIGINAL = new FileTable.Builder()
+            .add("kept", 10).add("removed", 20).add("resized", 30).add("z-removed", 40).build();
+    private static final FileTable CURRENT = new FileTable.Builder()
+            .add("added", 5).add("kept", 10).add("resized", 31).add("zz-added", 50).build();
+
+    @Test
+    void mergesTables() {
+        FileChanges changes = FileChanges.compare(ORIGINAL, CURRENT, true);
+        assertEquals(2, changes.getAdded());
+        assertEquals(2, changes.getRemoved());
+        assertEquals(1, changes.getResized());
+        assertEquals(List.of("added", "zz-added"), changes.getAddedNames());
+        assertEquals(List.of("removed", "z-removed"), changes.getRemovedNames());
+        assertEquals(List.of("resized"), changes.getResizedNames());
+        assertFalse(changes.isEmpty());
+    }
+
+    @Test
+    void countsWithoutNames() {
+        FileChanges changes = FileChanges.compare(ORIGINAL, CURRENT, false);
+        assertEquals(2, changes.getAdded());
+        assertEquals(2, changes.getRemoved());
+        assertEquals(1, changes.getResized());
+        assertTrue(changes.getAddedNames().isEmpty());
+        assertTrue(changes.getRemovedNames().isEmpty());
+        assertTrue(changes.getResizedNames().isEmpty());
+    }
+
+    @Test
+    void mergesWithEmptyTables() {
+        FileChanges added = FileChanges.compare(FileTable.EMPTY, CURRENT, true);
+        assertEquals(CURRENT.size(), added.getAdded());
+        assertEquals(0, added.getRemoved());
+
+        FileChanges removed = FileChanges.compare(ORIGINAL, FileTable.EMPTY, true);
+        assertEquals(ORIGINAL.size(), removed.getRemoved());
+        assertEquals(0, removed.getAdded());
+    }
+
+    @Test
+    void findsNoChanges() {
+        FileTable same = new FileTable.Builder().add("resized", 30).add("kept", 10).add("z-removed", 40).add("removed", 20).build();
+        assertSame(FileChanges.NONE, FileChanges.compare(ORIGINAL, same, true));
+        assertTrue(FileChanges.NONE.isEmpty());
+    }
+
+}
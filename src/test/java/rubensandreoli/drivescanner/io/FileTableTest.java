@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class FileTableTest {
+
+    private static final List<String> NAMES = List.of(
+            "a", "B", "b.txt", "é", "ação", "日本語", "😀 emoji", "�", "߿", "ࠀ", "Z", "~");
+
+    private static FileTable build(List<String> names){
+        FileTable.Builder builder = new FileTable.Builder();
+        for (int i = 0; i < names.size(); i++) {
+            builder.add(names.get(i), i + 1L);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void sortsAsStrings() {
+        List<String> shuffled = new ArrayList<>(NAMES);
+        Collections.shuffle(shuffled, new Random(1));
+        FileTable table = build(shuffled);
+
+        List<String> sorted = new ArrayList<>(NAMES);
+        Collections.sort(sorted);
+        assertEquals(sorted.size(), table.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), table.getName(i));
+            assertEquals(shuffled.indexOf(sorted.get(i)) + 1L, table.getSize(i)); //sizes follow their names.
+        }
+    }
+
+    @Test
+    void findsNames() {
+        FileTable table = build(NAMES);
+        for (String name : NAMES) {
+            int index = table.indexOf(name);
+            assertTrue(index >= 0, name);
+            assertEquals(name, table.getName(index));
+        }
+        assertEquals(-1, table.indexOf("missing"));
+        assertEquals(-1, table.indexOf(""));
+    }
+
+    @Test
+    void keepsNamesIntact() {
+        List<String> names = List.of("nul\u0000inside", "\uD800lone", "\uDC00lone", "plain");
+        FileTable table = build(names);
+        for (String name : names) {
+            assertEquals(name, table.getName(table.indexOf(name)));
+        }
+    }
+
+    @Test
+    void addsUpSizes() {
+        FileTable table = build(NAMES);
+        long total = 0L;
+        for (int i = 0; i < table.size(); i++) {
+            total += table.getSize(i);
+        }
+        assertEquals(total, table.getTotalSize());
+        assertEquals(0L, FileTable.EMPTY.getTotalSize());
+        assertTrue(new FileTable.Builder().build().isEmpty());
+    }
+
+    @Test
+    void roundTripsPacked() {
+        FileTable table = build(NAMES);
+        ByteBuffer buffer = ByteBuffer.allocate(table.getLength() + 3).position(3); //not at the start of the buffer.
+        table.writeTo(buffer);
+        FileTable wrapped = FileTable.wrap(buffer.flip().position(3));
+        assertEquals(table, wrapped);
+        assertEquals(table.hashCode(), wrapped.hashCode());
+        assertEquals(NAMES.size(), wrapped.size());
+    }
+
+    @Test
+    void roundTripsSerialized() throws IOException, ClassNotFoundException {
+        FileTable table = build(NAMES);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(table);
+        }
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))){
+            FileTable read = (FileTable) in.readObject();
+            assertEquals(table, read);
+            for (int i = 0; i < table.size(); i++) {
+                assertEquals(table.getName(i), read.getName(i));
+                assertEquals(table.getSize(i), read.getSize(i));
+            }
+        }
+    }
+
+    @Test
+    void comparesNamesAcrossTables() {
+        FileTable first = new FileTable.Builder().add("a", 1).add("é", 1).build();
+        FileTable second = new FileTable.Builder().add("ab", 1).add("z", 1).build();
+        assertTrue(FileTable.compareNames(first, 0, second, 0) < 0); //prefix first.
+        assertTrue(FileTable.compareNames(first, 1, second, 1) > 0); //as String#compareTo, past ASCII.
+        assertEquals(0, FileTable.compareNames(first, 0, first, 0));
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.Locale;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class FolderPathTest {
+
+    private static final File ROOT = File.listRoots()[0];
+
+    @Test
+    void equalsPathsBuiltApart() {
+        File file = new File(ROOT, "a/b/c");
+        FolderPath path = FolderPath.of(file), other = FolderPath.of(file);
+        assertNotSame(path, other);
+        assertEquals(path, other);
+        assertEquals(path.hashCode(), other.hashCode());
+        assertEquals(path, FolderPath.of(new File(ROOT, "a/b")).resolve("c"));
+        assertEquals(file, path.toFile());
+    }
+
+    @Test
+    void differsByAnyName() {
+        FolderPath path = FolderPath.of(new File(ROOT, "a/b/c"));
+        assertNotEquals(path, FolderPath.of(new File(ROOT, "a/b/d")));
+        assertNotEquals(path, FolderPath.of(new File(ROOT, "x/b/c")));
+        assertNotEquals(path, FolderPath.of(new File(ROOT, "a/b")));
+        assertNotEquals(path, FolderPath.of(new File(ROOT, "a/b/c/d")));
+        assertNotEquals(path, null);
+    }
+
+    @Test
+    void sharesInternedParents() {
+        FolderPath.Interner interner = new FolderPath.Interner();
+        FolderPath first = interner.intern(FolderPath.of(new File(ROOT, "a/b/c")));
+        FolderPath second = interner.intern(FolderPath.of(new File(ROOT, "a/b/d")));
+        assertSame(first.getParent(), second.getParent());
+        assertEquals(FolderPath.of(new File(ROOT, "a/b/c")), first);
+        assertSame(first, interner.intern(FolderPath.of(new File(ROOT, "a/b/c"))));
+    }
+
+    @Test
+    void sortsByNamesFromRoot() {
+        FolderPath parent = FolderPath.of(new File(ROOT, "a"));
+        FolderPath child = FolderPath.of(new File(ROOT, "a/b"));
+        FolderPath sibling = FolderPath.of(new File(ROOT, "a-b"));
+        assertTrue(parent.compareTo(child) < 0); //a folder before its subfolders.
+        assertTrue(child.compareTo(sibling) < 0); //names decide, not separators.
+        assertTrue(sibling.compareTo(child) > 0);
+        assertEquals(0, child.compareTo(FolderPath.of(new File(ROOT, "a/b"))));
+    }
+
+    @Test
+    void foldsCaseAsEqualsIgnoreCase() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR")); //where "I" lowercases to a dotless "ı".
+        try{
+            for (String[] names : new String[][]{{"FILE", "file"}, {"İ", "i"}, {"ß", "ß"}, {"Σ", "ς"}, {"\uD801\uDC00", "\uD801\uDC28"}}) {
+                assertEquals(names[0].equalsIgnoreCase(names[1]), FolderPath.foldCase(names[0]).equals(FolderPath.foldCase(names[1])), names[0]);
+            }
+            assertEquals(FolderPath.foldCase("I"), FolderPath.foldCase("i"));
+        }finally{
+            Locale.setDefault(locale);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class PathIndexTest {
+
+    private static final File DRIVE = new File(File.listRoots()[0], "drive");
+
+    private static Folder folder(String path){
+        return new Folder(new File(DRIVE, path));
+    }
+
+    @Test
+    void findsFoldersByPath() {
+        PathIndex index = new PathIndex(DRIVE);
+        index.addAll(List.of(folder("a"), folder("a/b/c")));
+        assertEquals(2, index.size());
+        assertTrue(index.find(FolderPath.of(new File(DRIVE, "a"))).isCovered());
+        assertFalse(index.find(FolderPath.of(new File(DRIVE, "a/b"))).isCovered()); //only on the way to c.
+        assertTrue(index.find(FolderPath.of(new File(DRIVE, "a/b/c"))).isComplete());
+        assertFalse(index.isComplete(new File(DRIVE, "a")));
+        assertNull(index.find(FolderPath.of(new File(DRIVE, "x"))));
+        assertNull(index.find(FolderPath.of(new File(DRIVE.getPath()+"2", "a")))); //sibling sharing a prefix.
+        assertNull(index.find(FolderPath.of(DRIVE.getParentFile())));
+        assertNotNull(index.find(FolderPath.of(DRIVE)));
+    }
+
+    @Test
+    void removesFolders() {
+        PathIndex index = new PathIndex(DRIVE);
+        index.addAll(List.of(folder("a"), folder("a/b")));
+        index.addAll(List.of(folder("a/b")));
+        index.removeAll(List.of(folder("a/b")));
+        assertTrue(index.contains(new File(DRIVE, "a/b"))); //still in the other scan.
+        index.removeAll(List.of(folder("a/b")));
+        assertFalse(index.contains(new File(DRIVE, "a/b")));
+        assertTrue(index.isComplete(new File(DRIVE, "a")));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void copiesDeepTrees() throws InterruptedException {
+        FolderPath path = FolderPath.of(DRIVE);
+        for (int i = 0; i < 10_000; i++) {
+            path = path.resolve("f");
+        }
+        PathIndex index = new PathIndex(DRIVE);
+        index.addAll(List.of(new Folder(path)));
+        AtomicReference<PathIndex> copy = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> copy.set(new PathIndex(index)), "copy", 64 * 1024); //a small stack, as recursion would need a frame per level.
+        thread.start();
+        thread.join();
+        assertNotNull(copy.get());
+        copy.get().addAll(List.of(folder("a")));
+        assertEquals(2, copy.get().size());
+        assertEquals(1, index.size()); //the original is left as it is.
+        assertTrue(copy.get().find(path).isCovered());
+    }
+
+}
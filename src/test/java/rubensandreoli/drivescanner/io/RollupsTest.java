@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class RollupsTest {
+
+    private static final File DRIVE = new File(File.listRoots()[0], "drive");
+
+    private static Folder createFolder(String path, long... sizes){
+        Folder folder = new Folder(new File(DRIVE, path));
+        folder.setFiles(createFiles(sizes));
+        return folder;
+    }
+
+    private static FileTable createFiles(long... sizes){
+        FileTable.Builder files = new FileTable.Builder();
+        for (int i = 0; i < sizes.length; i++) {
+            files.add("file"+i, sizes[i]);
+        }
+        return files.build();
+    }
+
+    private static void assertRollup(long size, long files, long folders, Rollup rollup){
+        assertEquals(size, rollup.getSize(), "size");
+        assertEquals(files, rollup.getFiles(), "files");
+        assertEquals(folders, rollup.getFolders(), "folders");
+    }
+
+    private static Scan createScan(Folder... folders){
+        Set<Folder> set = Scan.getNewFolderSet();
+        set.addAll(List.of(folders));
+        return new Scan("test", DRIVE, set);
+    }
+
+    @Test
+    void addsUpSubtrees() {
+        Scan scan = createScan(createFolder("a", 10, 20), createFolder("a/b", 5), createFolder("c", 1));
+        assertRollup(36, 4, 3, scan.getRollup(DRIVE));
+        assertRollup(35, 3, 2, scan.getRollup(new File(DRIVE, "a")));
+        assertRollup(5, 1, 1, scan.getRollup(new File(DRIVE, "a/b")));
+        assertRollup(0, 0, 0, scan.getRollup(new File(DRIVE, "missing")));
+        assertRollup(0, 0, 0, scan.getRollup(DRIVE.getParentFile())); //above the drive.
+    }
+
+    @Test
+    void appliesUpdateDeltas() {
+        Folder changed = createFolder("a/b", 5);
+        Scan scan = createScan(createFolder("a", 10), changed);
+        scan.setFiles(changed, createFiles(5, 7, 8));
+        assertRollup(30, 4, 2, scan.getRollup(DRIVE));
+        assertRollup(20, 3, 1, scan.getRollup(new File(DRIVE, "a/b")));
+
+        scan.setFiles(changed, null); //deleted.
+        assertRollup(10, 1, 2, scan.getRollup(DRIVE));
+        assertRollup(0, 0, 1, scan.getRollup(new File(DRIVE, "a/b")));
+    }
+
+    @Test
+    void addsMergedFolders() {
+        Folder shared = createFolder("a", 10);
+        Scan scan = createScan(shared);
+        Scan other = createScan(shared, createFolder("a/b", 3), createFolder("c", 4, 4));
+        scan.merge(List.of(other));
+        assertRollup(21, 4, 3, scan.getRollup(DRIVE)); //the shared folder counts once.
+        assertRollup(13, 2, 2, scan.getRollup(new File(DRIVE, "a")));
+    }
+
+    @Test
+    void dropsRemovedFolders() {
+        Folder removed = createFolder("a/b", 3);
+        Scan scan = createScan(createFolder("a", 10), removed);
+        scan.removeFolders(Set.of(removed));
+        assertRollup(10, 1, 1, scan.getRollup(DRIVE));
+        assertRollup(0, 0, 0, scan.getRollup(new File(DRIVE, "a/b")));
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        Folder changed = createFolder("a", 10);
+        Scan scan = createScan(changed);
+        Scan copy = scan.getCopy();
+        copy.setFiles(changed, createFiles(1));
+        assertRollup(1, 1, 1, copy.getRollup(DRIVE));
+        assertRollup(10, 1, 1, scan.getRollup(DRIVE)); //the folder changed, but not the original's totals.
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2022 Rubens A. Andreoli Jr.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package rubensandreoli.drivescanner.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScannerTest {
+
+    //<editor-fold defaultstate="collapsed" desc="HANDLER">
+    private static class Handler implements Scanner.Handler{
+
+        private volatile boolean interrupted;
+
+        @Override
+        public void setProgress(Scanner.Progress progress) {}
+
+        @Override
+        public boolean isInterrupted() {
+            return interrupted;
+        }
+
+    }
+    //</editor-fold>
+
+    @TempDir
+    Path drive;
+
+    private final Handler handler = new Handler();
+
+    private void write(String file, int size) throws IOException{
+        Path path = drive.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, new byte[size]);
+    }
+
+    private Scan scan(Scanner scanner){
+        File file = drive.toFile();
+        return scanner.scan("test", file, new PathIndex(file));
+    }
+
+    private static Folder find(Scan scan, File file){
+        for (Folder folder : scan.getFolders()) {
+            if(folder.getFile().equals(file)) return folder;
+        }
+        return fail("folder not scanned: "+file);
+    }
+
+    /**
+     * Checkpoint of a scan interrupted after reading the drive and its folder
+     * {@code a}, with a file {@code a} does not have; {@code b} is left to crawl.
+     */
+    private Checkpoint writeCheckpoint() throws IOException{
+        File file = drive.toFile();
+        Checkpoint checkpoint = new Checkpoint(drive.resolveSibling(drive.getFileName()+".checkpoint").toFile(), Checkpoint.DEFAULT_INTERVAL);
+        Folder root = new Folder(file), a = new Folder(new File(file, "a"));
+        root.setFiles(FileTable.EMPTY);
+        a.setFiles(new FileTable.Builder().add("ghost", 5).build());
+        try(Checkpoint.Writer writer = checkpoint.open(file, null)){
+            writer.add(new Checkpoint.Record(root, true, List.of(
+                    new FolderReader.Subfolder(new File(file, "a"), FileKeySet.UNKNOWN_DEVICE, 0L), 
+                    new FolderReader.Subfolder(new File(file, "b"), FileKeySet.UNKNOWN_DEVICE, 0L))));
+            writer.add(new Checkpoint.Record(a, true, List.of()));
+        }
+        return checkpoint;
+    }
+
+    @Test
+    void keepsAllocatedSizeOnPlainUpdate() throws IOException {
+        write("a/file", 100);
+        Scanner scanner = new Scanner(handler);
+        scanner.setCountAllocated(true);
+        Scan scan = scan(scanner);
+        Folder folder = find(scan, drive.resolve("a").toFile());
+        long allocated = folder.getAllocatedSize();
+        assertTrue(allocated >= 100);
+
+        scanner.setCountAllocated(false);
+        scanner.update(scan);
+        assertEquals(allocated, folder.getAllocatedSize());
+
+        write("a/other", 100);
+        scanner.setCountAllocated(true);
+        scanner.update(scan);
+        assertTrue(folder.getAllocatedSize() > allocated);
+    }
+
+    @Test
+    void countsHardLinksOnce() throws IOException {
+        write("a/file", 100);
+        Files.createDirectories(drive.resolve("b"));
+        try {
+            Files.createLink(drive.resolve("b/link"), drive.resolve("a/file"));
+        } catch (UnsupportedOperationException ex) {
+            return; //no hard links on this file system.
+        }
+        Scanner scanner = new Scanner(handler);
+        scanner.setCountAllocated(true);
+        Scan scan = scan(scanner);
+        long a = find(scan, drive.resolve("a").toFile()).getAllocatedSize();
+        long b = find(scan, drive.resolve("b").toFile()).getAllocatedSize();
+        assertEquals(200, scan.getSize());
+        assertEquals(0, Math.min(a, b)); //in whichever folder was read last.
+        assertTrue(Math.max(a, b) >= 100);
+    }
+
+    @Test
+    void resumesFromCheckpoint() throws IOException {
+        write("a/file", 10);
+        write("b/file", 20);
+        Checkpoint checkpoint = writeCheckpoint();
+        Scanner scanner = new Scanner(handler);
+        scanner.setCheckpoint(checkpoint);
+        Scan scan = scan(scanner);
+        assertEquals(3, scan.getTotalFolders());
+        assertTrue(find(scan, drive.resolve("a").toFile()).getFiles().indexOf("ghost") >= 0); //replayed, not read again.
+        assertEquals(25, scan.getSize());
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    void refinesWithoutCheckpoint() throws IOException {
+        write("a/file", 10);
+        write("b/file", 20);
+        File file = drive.toFile();
+        Checkpoint checkpoint = writeCheckpoint();
+        Scanner scanner = new Scanner(handler);
+        scanner.setCheckpoint(checkpoint);
+        Folder root = new Folder(file);
+        root.setFiles(FileTable.EMPTY);
+        Set<Folder> folders = Scan.getNewFolderSet();
+        folders.add(root);
+        Scan refined = scanner.refine(new Scan("test", file, folders), new PathIndex(file));
+        assertEquals(3, refined.getTotalFolders());
+        assertEquals(30, refined.getSize());
+        assertTrue(checkpoint.exists()); //still there for the scan it belongs to.
+        checkpoint.delete();
+    }
+
+    @Test
+    void spillsResumedFolders(@TempDir Path spill) throws IOException {
+        write("a/file", 10);
+        write("b/file", 20);
+        Checkpoint checkpoint = writeCheckpoint();
+        Scanner scanner = new Scanner(handler);
+        scanner.setCheckpoint(checkpoint);
+        scanner.setSpillFolder(spill.toFile());
+        Scan scan = scan(scanner);
+        for (Folder folder : scan.getFolders()) {
+            assertTrue(folder.isSpilled(), folder.toString());
+        }
+        assertFalse(scan.hasFilesInMemory());
+        assertEquals(0, find(scan, drive.resolve("a").toFile()).getFiles().indexOf("ghost"));
+        assertEquals(25, scan.getSize());
+    }
+
+    @Test
+    void appendsOnlyChangedTablesToSidecars(@TempDir Path spill) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            write("f"+i+"/file", i);
+        }
+        Scanner scanner = new Scanner(handler);
+        scanner.setSpillFolder(spill.toFile());
+        Scan scan = scan(scanner);
+        File sidecar = spill.resolve("scan.files").toFile();
+        scan.spillTo(sidecar);
+        long length = sidecar.length();
+        assertTrue(length > 0);
+
+        scanner.update(scan);
+        scan.spillTo(sidecar);
+        assertEquals(length, sidecar.length()); //nothing changed, nothing written.
+
+        write("f0/file", 1000);
+        scanner.update(scan);
+        scan.spillTo(sidecar);
+        assertTrue(sidecar.length() > length);
+        assertTrue(sidecar.length() < 2 * length); //only the changed table, and its original.
+
+        for (int i = 0; i < 50; i++) {
+            write("f1/file", i);
+            scanner.update(scan);
+            scan.spillTo(sidecar);
+        }
+        assertTrue(sidecar.length() < 3 * length); //compacted once replaced tables outweighed the live ones.
+        assertEquals(1000, find(scan, drive.resolve("f0").toFile()).getFiles().getTotalSize());
+        assertEquals(49, find(scan, drive.resolve("f1").toFile()).getFiles().getTotalSize());
+        assertEquals(1, find(scan, drive.resolve("f1").toFile()).getChanges().getResized());
+    }
+
+    @Test
+    void quickUpdatesSkipUnchangedFolders() throws IOException {
+        write("a/file", 10);
+        write("b/file", 20);
+        Scanner scanner = new Scanner(handler);
+        Scan scan = scan(scanner);
+        Path folder = drive.resolve("a");
+        FileTime modified = Files.getLastModifiedTime(folder);
+        write("a/file", 15); //rewriting a file leaves the folder's modified time as it is.
+        Files.setLastModifiedTime(folder, modified);
+        write("b/other", 5); //adding one changes it.
+
+        scanner.update(scan, false);
+        assertEquals(10, find(scan, folder.toFile()).getCurrentSize()); //skipped.
+        assertEquals(25, find(scan, drive.resolve("b").toFile()).getCurrentSize());
+        assertEquals(Folder.State.INCREASED, find(scan, drive.resolve("b").toFile()).getState());
+        assertTrue(scanner.getProgress().getSkipped() >= 1);
+
+        scanner.update(scan);
+        assertEquals(15, find(scan, folder.toFile()).getCurrentSize()); //verified.
+        assertEquals(40, scan.getUpdatedSize());
+    }
+
+}